@@ -0,0 +1,142 @@
+package com.game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.apache.mina.filter.codec.AbstractProtocolEncoderOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.common.codec.Packet;
+import com.game.common.codec.PacketBatch;
+import com.game.common.codec.PacketBuilder;
+import com.game.common.codec.PacketDecoder;
+import com.game.common.codec.PacketEncoder;
+import com.game.common.model.Hash;
+import com.game.common.model.Point;
+import com.game.common.util.ISAACAlgorithm;
+
+// Building, encoding and decoding the packets sent every tick, with encryption enabled as it is once logged in
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	public static final long SEED = 0x5eed;
+	public static final int PLAYERS = 32; // players in each update packet
+	public static final int BATCH_SIZE = 10; // packets in each batch
+
+	private static class EncoderOutput extends AbstractProtocolEncoderOutput {
+		@Override
+		public WriteFuture flush() {
+			return null;
+		}
+	}
+
+	private static class DecoderOutput extends AbstractProtocolDecoderOutput {
+		@Override
+		public void flush(NextFilter nextFilter, IoSession session) { }
+	}
+
+	protected IoSession sender;
+	protected IoSession receiver;
+	protected PacketEncoder encoder;
+	protected PacketDecoder decoder;
+	protected EncoderOutput encoded;
+	protected DecoderOutput decoded;
+	protected Hash hash;
+	protected Point location;
+
+	@Setup
+	public void setup() {
+		// Both ends are seeded the same, so each packet type decrypts correctly
+		sender = new DummySession();
+		sender.setAttribute("encrypter", new ISAACAlgorithm(SEED));
+
+		receiver = new DummySession();
+		receiver.setAttribute("decrypter", new ISAACAlgorithm(SEED));
+
+		encoder = new PacketEncoder();
+		decoder = new PacketDecoder();
+		encoded = new EncoderOutput();
+		decoded = new DecoderOutput();
+
+		hash = new Hash("username");
+		location = new Point(320, 320);
+	}
+
+	// An update of everyone in view, the most common packet the server sends
+	protected PacketBuilder buildUpdate() {
+		PacketBuilder packet = new PacketBuilder(Packet.Type.PLAYERS_UPDATE_RESPONSE);
+
+		packet.putShort((short) PLAYERS);
+		for (int i = 0;i < PLAYERS;i++) {
+			packet.putShort((short) (i << 4 | Packet.ABSOLUTE_DIRECTION));
+			packet.putPoint(location);
+		}
+
+		return packet;
+	}
+
+	protected PacketBuilder buildChat() {
+		PacketBuilder packet = new PacketBuilder(Packet.Type.CHAT_RESPONSE);
+
+		packet.putHash(hash);
+		packet.putString("Hello world!");
+
+		return packet;
+	}
+
+	@Benchmark
+	public IoBuffer encode() throws Exception {
+		encoder.encode(sender, this.buildUpdate(), encoded);
+
+		return (IoBuffer) encoded.getMessageQueue().poll();
+	}
+
+	@Benchmark
+	public IoBuffer encodeBatch() throws Exception {
+		PacketBatch batch = new PacketBatch();
+		for (int i = 0;i < BATCH_SIZE;i++)
+			batch.add(this.buildChat());
+
+		encoder.encode(sender, batch, encoded);
+
+		return (IoBuffer) encoded.getMessageQueue().poll();
+	}
+
+	@Benchmark
+	public int roundTrip() throws Exception {
+		encoder.encode(sender, this.buildUpdate(), encoded);
+		decoder.decode(receiver, (IoBuffer) encoded.getMessageQueue().poll(), decoded);
+
+		// Read it back the way the client does, then give the buffer back
+		Packet packet = (Packet) decoded.getMessageQueue().poll();
+
+		int count = packet.getShort();
+		int total = 0;
+		for (int i = 0;i < count;i++) {
+			total += packet.getShort();
+			total += packet.getPoint().x;
+		}
+
+		packet.release();
+		return total;
+	}
+}
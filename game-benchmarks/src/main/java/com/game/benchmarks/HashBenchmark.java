@@ -0,0 +1,47 @@
+package com.game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.common.model.Hash;
+
+// Simulates a burst of logins all hashing credentials at once
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	protected final String credentials = "username:password";
+	protected final Hash hash = new Hash(credentials);
+
+	@Benchmark
+	@Threads(1)
+	public Hash hashSingle() {
+		return new Hash(credentials);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Hash hashConcurrent() {
+		return new Hash(credentials);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public String toStringConcurrent() {
+		return hash.toString();
+	}
+}
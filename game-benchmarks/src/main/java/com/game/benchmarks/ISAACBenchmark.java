@@ -0,0 +1,45 @@
+package com.game.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.common.util.ISAACAlgorithm;
+
+// Every packet header is encrypted with the next value from the session's cipher
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ISAACBenchmark {
+
+	public static final long SEED = 0x5eed;
+
+	protected ISAACAlgorithm isaac;
+
+	@Setup
+	public void setup() {
+		isaac = new ISAACAlgorithm(SEED);
+	}
+
+	@Benchmark
+	public int nextInt() {
+		return isaac.nextInt();
+	}
+
+	@Benchmark
+	public ISAACAlgorithm create() {
+		return new ISAACAlgorithm(SEED);
+	}
+}
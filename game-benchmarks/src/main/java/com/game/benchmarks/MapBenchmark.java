@@ -0,0 +1,100 @@
+package com.game.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.common.model.Path;
+import com.game.common.model.Point;
+import com.game.common.model.Tile;
+import com.game.server.model.WorldMap;
+
+// Path finding and step checking on the shipped world map, the same routes every run so results can be compared
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+	public static final long SEED = 0x5eed;
+	public static final int ROUTES = 256;
+	public static final int ROUTE_RADIUS = 16; // how far apart the ends of each route are at most
+	public static final int MAX_ATTEMPTS = 100000;
+
+	protected WorldMap map;
+	protected Point[] starts;
+	protected Point[] targets;
+	protected Point[] steps;
+	protected int next;
+
+	@Setup
+	public void setup() {
+		map = WorldMap.load();
+
+		List<Point> walkable = new ArrayList<Point>();
+		for (int x = 0;x < map.getWidth();x++) {
+			for (int y = 0;y < map.getHeight();y++) {
+				if (map.getTile(x, y).isWalkable())
+					walkable.add(new Point(x, y));
+			}
+		}
+
+		if (walkable.isEmpty())
+			throw new RuntimeException("The map has no walkable tiles");
+
+		Random random = new Random(SEED);
+
+		starts = new Point[ROUTES];
+		targets = new Point[ROUTES];
+		steps = new Point[ROUTES];
+
+		// Pick routes which actually have a path, and a random neighbour of each start to test stepping to
+		int found = 0;
+		for (int i = 0;i < MAX_ATTEMPTS && found < ROUTES;i++) {
+			Point start = walkable.get(random.nextInt(walkable.size()));
+			Point target = new Point(start.x + random.nextInt(ROUTE_RADIUS * 2 + 1) - ROUTE_RADIUS, start.y + random.nextInt(ROUTE_RADIUS * 2 + 1) - ROUTE_RADIUS);
+
+			Tile tile = (target.x >= 0 && target.x < map.getWidth() && target.y >= 0 && target.y < map.getHeight()) ? map.getTile(target) : null;
+			if (tile == null || !tile.isWalkable() || target.equals(start) || map.generatePath(start, target) == null)
+				continue;
+
+			starts[found] = start;
+			targets[found] = target;
+			steps[found] = start.step(random.nextInt(Point.DIRECTIONS));
+			found++;
+		}
+
+		if (found < ROUTES)
+			throw new RuntimeException("Only found " + found + " routes, expected " + ROUTES);
+
+		next = 0;
+	}
+
+	@Benchmark
+	public Path generatePath() {
+		int i = next++ & (ROUTES - 1);
+
+		return map.generatePath(starts[i], targets[i]);
+	}
+
+	@Benchmark
+	public boolean isValidStep() {
+		int i = next++ & (ROUTES - 1);
+
+		return map.isValidStep(starts[i], steps[i]);
+	}
+}
@@ -0,0 +1,141 @@
+package com.game.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.common.codec.PacketCodecFactory;
+import com.game.common.model.Path;
+import com.game.common.model.PlayerProfile;
+import com.game.common.model.Point;
+import com.game.common.model.Tile;
+import com.game.server.Server;
+import com.game.server.WorldManager;
+import com.game.server.db.AccountSeeder;
+import com.game.server.db.Database;
+import com.game.server.model.Player;
+import com.game.server.model.WorldMap;
+
+// A full world tick with everyone walking around, using an in-memory database and sessions which go nowhere
+// NOTE: The server is never started, so nothing is listening
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldBenchmark {
+
+	public static final long SEED = 0x5eed;
+	public static final int WALK_RADIUS = 16;
+	public static final int MAX_TARGET_ATTEMPTS = 10;
+
+	@Param({ "100", "500", "1000" })
+	public int playerCount;
+
+	protected Server server;
+	protected WorldManager world;
+	protected WorldMap map;
+	protected Random random;
+	protected List<Player> players;
+	protected Path[] paths;
+	protected long now;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		server = Server.create("-e", Database.IN_MEMORY);
+		world = server.getWorldManager();
+		map = world.getMap();
+		random = new Random(SEED);
+
+		List<Point> walkable = new ArrayList<Point>();
+		for (int x = 0;x < map.getWidth();x++) {
+			for (int y = 0;y < map.getHeight();y++) {
+				if (map.getTile(x, y).isWalkable())
+					walkable.add(new Point(x, y));
+			}
+		}
+
+		// The profiles need to be in the database, so autosaves have something to update
+		List<PlayerProfile> profiles = new ArrayList<PlayerProfile>(playerCount);
+		for (int i = 0;i < playerCount;i++)
+			profiles.add(AccountSeeder.createProfile("benchmark" + i, "password", walkable.get(random.nextInt(walkable.size()))));
+
+		server.getDatabase().create(profiles);
+
+		players = new ArrayList<Player>(playerCount);
+		for (PlayerProfile profile : profiles) {
+			// Encode everything written to the session, but don't send it anywhere
+			DummySession session = new DummySession();
+			session.getFilterChain().addLast("codec", new ProtocolCodecFilter(new PacketCodecFactory()));
+
+			Player player = new Player(server, session, profile);
+			world.addPlayer(player);
+			players.add(player);
+		}
+
+		paths = new Path[playerCount];
+
+		// Get everyone logged in and seen, so we only measure the steady state
+		now = System.currentTimeMillis();
+		this.tick();
+	}
+
+	@Setup(Level.Invocation)
+	public void walk() {
+		// Anyone who has got where they were going picks somewhere new
+		for (int i = 0;i < playerCount;i++) {
+			if (paths[i] != null && paths[i].hasNext())
+				continue;
+
+			Player player = players.get(i);
+			Point location = player.getLocation();
+
+			paths[i] = null;
+			for (int j = 0;j < MAX_TARGET_ATTEMPTS && paths[i] == null;j++) {
+				Point target = new Point(location.x + random.nextInt(WALK_RADIUS * 2 + 1) - WALK_RADIUS, location.y + random.nextInt(WALK_RADIUS * 2 + 1) - WALK_RADIUS);
+				if (target.x < 0 || target.x >= map.getWidth() || target.y < 0 || target.y >= map.getHeight())
+					continue;
+
+				Tile tile = map.getTile(target);
+				if (tile == null || !tile.isWalkable() || target.equals(location))
+					continue;
+
+				paths[i] = map.generatePath(location, target);
+			}
+
+			if (paths[i] != null)
+				player.setPath(paths[i]);
+		}
+	}
+
+	@Benchmark
+	public void tick() {
+		now += WorldManager.PLAYER_UPDATE_DELAY;
+
+		world.update(now);
+		world.flush();
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		server.getDatabase().close();
+	}
+}
@@ -200,6 +200,11 @@ public final class Client extends ClientFrame {
 		log.info("Successfully logged in.");
 	}
 
+	public void loginQueued(int position) {
+		if (loginWindow != null)
+			loginWindow.queued(position);
+	}
+
 	public void loginFailed(String message) {
 		loginWindow.failed(message);
 		connection.close();
@@ -119,8 +119,11 @@ public class Connection implements IoHandler {
 			lastPacketUpdate = now;
 
 			synchronized (packets) {
-				for (Packet message : packets)
+				// Process the packets, then give their buffers back
+				for (Packet message : packets) {
 					this.processPacket(message);
+					message.release();
+				}
 
 				packets.clear();
 			}
@@ -190,8 +193,8 @@ public class Connection implements IoHandler {
 					packets.add(message);
 				}
 			}
-			// If we aren't logged in then this must be the login response
-			else if (message.getType() == Packet.Type.LOGIN_RESPONSE) {
+			// If we aren't logged in then this must be the login response, or our place in the login queue
+			else if (message.getType() == Packet.Type.LOGIN_RESPONSE || message.getType() == Packet.Type.LOGIN_QUEUE_RESPONSE) {
 				// Mark this session as pending login
 				session.setAttribute("pending");
 
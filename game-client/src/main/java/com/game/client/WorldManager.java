@@ -8,8 +8,8 @@ import com.game.common.codec.PacketBuilder;
 import com.game.common.model.Friend;
 import com.game.common.model.Hash;
 import com.game.common.model.Inventory;
-import com.game.common.model.Path;
 import com.game.common.model.PlayerProfile;
+import com.game.common.model.Point;
 import com.game.common.util.FriendList;
 import com.game.common.util.StatList;
 import com.game.graphics.models.Model;
@@ -99,10 +99,11 @@ public class WorldManager extends GameEngine {
 		connection.write(packet);
 	}
 
-	public void sendWalkTo(Path path) {
+	// The server works out the path itself, we only need to tell it where we're going
+	public void sendWalkTo(Point target) {
 		PacketBuilder packet = new PacketBuilder(Packet.Type.WALK_TO_SEND);
 
-		packet.putPath(path);
+		packet.putPoint(target);
 
 		connection.write(packet);
 	}
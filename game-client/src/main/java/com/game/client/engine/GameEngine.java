@@ -7,9 +7,11 @@ import java.util.Map;
 import com.game.client.Client;
 import com.game.client.model.LocalMap;
 import com.game.client.model.Player;
+import com.game.common.codec.Packet;
 import com.game.common.model.Hash;
 import com.game.common.model.Path;
 import com.game.common.model.Point;
+import com.game.common.util.SlotTable;
 import com.game.graphics.models.Model;
 import com.game.graphics.renderer.Graphics3D;
 import com.game.graphics.renderer.Pickable;
@@ -20,6 +22,7 @@ public abstract class GameEngine {
 	protected final LocalMap map;
 	protected final Camera camera;
 	protected final Map<Hash, Player> players;
+	protected final SlotTable<Player> slots;
 	protected Player self;
 
 	public GameEngine(Client client) {
@@ -29,6 +32,7 @@ public abstract class GameEngine {
 		camera = new Camera(client.getKeyboard());
 
 		players = new HashMap<Hash, Player>();
+		slots = new SlotTable<Player>(Packet.MAX_PLAYER_SLOTS);
 
 		self = null;
 	}
@@ -49,18 +53,30 @@ public abstract class GameEngine {
 		return players.get(id);
 	}
 
-	public void addPlayer(Player player) {
+	// Players are referred to by the slot the server gave them, we are always slot 0
+	public Player getPlayer(int slot) {
+		return slots.get(slot);
+	}
+
+	public void addPlayer(int slot, Player player) {
 		players.put(player.getID(), player);
+		slots.put(slot, player);
 	}
 
-	public Player removePlayer(Hash id) {
-		return players.remove(id);
+	public Player removePlayer(int slot) {
+		Player player = slots.remove(slot);
+		if (player != null)
+			players.remove(player.getID());
+
+		return player;
 	}
 
 	public void init(Player self) {
 		this.self = self;
 		// Add ourself to the player list
-		this.addPlayer(self);
+		players.clear();
+		slots.clear();
+		this.addPlayer(0, self);
 
 		// Load the appropriate map sectors
 		map.setLocation(self.getLocation());
@@ -70,6 +86,9 @@ public abstract class GameEngine {
 	}
 
 	public void update(long now) {
+		// Swap in any map sectors which have finished loading
+		map.update();
+
 		// Update the camera
 		camera.update(now);
 	}
@@ -105,7 +124,7 @@ public abstract class GameEngine {
 			if (target == null)
 				return;
 
-			// Calculate a path from here to where was clicked
+			// Check there's a path from here to where was clicked, so we don't bother the server if there isn't
 			Path path = map.generatePath(self.getLocation(), target);
 			if (path == null)
 				return;
@@ -115,7 +134,7 @@ public abstract class GameEngine {
 				// TODO: Draw a mark where we clicked
 
 				// Send walk command
-				client.getWorldManager().sendWalkTo(path);
+				client.getWorldManager().sendWalkTo(target);
 			}
 		}
 		// The model was clicked
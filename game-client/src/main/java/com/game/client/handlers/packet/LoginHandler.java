@@ -22,6 +22,12 @@ public class LoginHandler implements PacketHandler {
 
 	@Override
 	public void handlePacket(Client client, WorldManager world, Packet packet) throws Exception {
+		// The server is busy, we've been told where we are in the queue
+		if (packet.getType() == Packet.Type.LOGIN_QUEUE_RESPONSE) {
+			client.loginQueued(packet.getInt());
+			return;
+		}
+
 		try {
 			boolean success = packet.getBoolean();
 			log.debug("Received login response: " + (success ? "success" : "fail"));
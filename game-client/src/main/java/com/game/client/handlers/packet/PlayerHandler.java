@@ -21,12 +21,13 @@ public class PlayerHandler implements PacketHandler {
 		case PLAYERS_ADD_RESPONSE: {
 			int playerCount = packet.getShort();
 			for (int i = 0;i < playerCount;i++) {
+				int slot = packet.getShort();
 				Hash id = packet.getHash();
 				String username = packet.getString();
 				Point location = packet.getPoint();
 
 				Player player = new Player(id, username, location, null); // TODO: The players model?
-				world.addPlayer(player);
+				world.addPlayer(slot, player);
 
 				if (log.isDebugEnabled())
 					log.debug("Added new player: " + player);
@@ -39,7 +40,7 @@ public class PlayerHandler implements PacketHandler {
 		case PLAYERS_REMOVE_RESPONSE: {
 			int playerCount = packet.getShort();
 			for (int i = 0;i < playerCount;i++) {
-				Player player = world.removePlayer(packet.getHash());
+				Player player = world.removePlayer(packet.getShort());
 
 				if (log.isDebugEnabled())
 					log.debug("Removed old player: " + player);
@@ -52,19 +53,31 @@ public class PlayerHandler implements PacketHandler {
 		case PLAYERS_UPDATE_RESPONSE: {
 			int playerCount = packet.getShort();
 			for (int i = 0;i < playerCount;i++) {
-				Hash id = packet.getHash();
-				Point location = packet.getPoint();
+				// Each update is the players slot and the direction they moved in
+				int update = packet.getShort() & 0xffff;
+				int slot = update >> 4;
+				int direction = update & 0xf;
 
-				// If it's an update for ourself
-				if (id.equals(world.getID())) {
-					world.setLocation(location);
+				// If they didn't move to an adjacent tile we're sent their location in full
+				Point location = null;
+				if (direction == Packet.ABSOLUTE_DIRECTION)
+					location = packet.getPoint();
+
+				Player player = world.getPlayer(slot);
+				// It's an update for a player we don't yet know about
+				if (player == null) {
+					log.warn("Received update for unknown player slot: " + slot);
 					continue;
 				}
 
-				Player player = world.getPlayer(id);
-				// It's an update for a player we don't yet know about
-				if (player == null)
+				if (location == null)
+					location = player.getLocation().step(direction);
+
+				// If it's an update for ourself
+				if (slot == 0) {
+					world.setLocation(location);
 					continue;
+				}
 
 				player.setLocation(location);
 			}
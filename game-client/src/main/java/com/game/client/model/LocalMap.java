@@ -1,20 +1,17 @@
 package com.game.client.model;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.game.common.model.CollisionMap;
 import com.game.common.model.Map;
+import com.game.common.model.MapFile;
 import com.game.common.model.Point;
-import com.game.graphics.elements.Quad;
 import com.game.graphics.elements.QuadBuffer;
-import com.game.graphics.elements.Vertex;
 import com.game.graphics.math.Dimension;
 import com.game.graphics.renderer.Graphics;
 import com.game.graphics.renderer.Pickable;
@@ -23,6 +20,34 @@ import com.game.graphics.renderer.SpriteMap;
 public class LocalMap extends Map {
 	private static final Logger log = LoggerFactory.getLogger(LocalMap.class);
 
+	// The buffers drawn for one sector, these are only rebuilt when a different sector takes its place
+	protected static class SectorBuffers {
+		protected final LocalMapSector sector;
+		protected final QuadBuffer tiles;
+		protected final QuadBuffer overlays;
+		protected final QuadBuffer walls;
+
+		protected SectorBuffers(LocalMapSector sector, QuadBuffer tiles, QuadBuffer overlays, QuadBuffer walls) {
+			this.sector = sector;
+			this.tiles = tiles;
+			this.overlays = overlays;
+			this.walls = walls;
+		}
+
+		protected void destroy() {
+			if (tiles != null)
+				tiles.destroy();
+
+			if (overlays != null)
+				overlays.destroy();
+
+			if (walls != null)
+				walls.destroy();
+		}
+	}
+
+	public static final int PREFETCH_DISTANCE = 8; // how close to the edge of the middle sector we get before loading what's past it
+
 	public static LocalMap load(Graphics graphics) {
 		URL path = Map.class.getResource("world.map");
 		if (path == null) {
@@ -32,24 +57,10 @@ public class LocalMap extends Map {
 		}
 
 		try {
-			DataInputStream in = new DataInputStream(new GZIPInputStream (path.openStream()));
-
-			// Confirm we are reading the correct map file
-			if (in.readInt() != Map.MAGIC_NUMBER) {
-				in.close();
-
-				log.error("Attempted to read invalid map file.");
-				System.exit(1); // fatal error
-				return null;
-			}
-
-			int width = in.readInt();		// width in sectors
-			int height = in.readInt();		// height in sectors
-			int sectorSize = in.readInt();	// tiles (squared) per sector
+			// Sectors are read from the file as we move around, so keep it open
+			MapFile file = MapFile.open(path);
 
-			in.close();
-
-			return new LocalMap(path, width, height, sectorSize, graphics);
+			return new LocalMap(file, graphics);
 		}
 		catch (IOException ioe) {
 			log.error("Error loading map: " + ioe.getMessage());
@@ -58,7 +69,8 @@ public class LocalMap extends Map {
 		}
 	}
 
-	protected final URL mapResource;
+	protected final MapFile mapFile;
+	protected final LocalMapLoader loader;
 	protected final Graphics graphics;
 	protected final LocalMapSector[][] sectors;
 
@@ -66,14 +78,15 @@ public class LocalMap extends Map {
 	protected final SpriteMap overlayTextures;
 	protected final SpriteMap wallTextures;
 
-	protected QuadBuffer tileBuffer;
-	protected QuadBuffer overlayBuffer;
-	protected QuadBuffer wallBuffer;
+	protected final TerrainMeshBuilder meshBuilder;
+	protected final SectorBuffers[][] buffers;
+
+	public LocalMap(MapFile mapFile, Graphics graphics) {
+		super (mapFile.getWidth(), mapFile.getHeight(), mapFile.getSectorSize());
 
-	public LocalMap(URL mapResource, int width, int height, int sectorSize, Graphics graphics) {
-		super (width, height, sectorSize);
+		this.mapFile = mapFile;
 
-		this.mapResource = mapResource;
+		loader = new LocalMapLoader(mapFile, new LocalMapSectorCache(LocalMapSectorCache.DEFAULT_BUDGET, mapFile.getSectorSize()));
 		this.graphics = graphics;
 
 		sectors = new LocalMapSector[3][3];
@@ -82,9 +95,17 @@ public class LocalMap extends Map {
 		overlayTextures = new SpriteMap(graphics.loadSprite("overlays.png"), 64, 64);
 		wallTextures = new SpriteMap(graphics.loadSprite("walls.png"), 64, 192);
 
-		tileBuffer = null;
-		overlayBuffer = null;
-		wallBuffer = null;
+		meshBuilder = new TerrainMeshBuilder(LocalMap.getTextures(tileTextures), LocalMap.getTextures(overlayTextures), LocalMap.getTextures(wallTextures));
+		buffers = new SectorBuffers[3][3];
+	}
+
+	// Looks up where every sprite in the map is once, rather than for every quad
+	private static Dimension[] getTextures(SpriteMap map) {
+		Dimension[] textures = new Dimension[map.width * map.height];
+		for (int i = 0;i < textures.length;i++)
+			textures[i] = map.getSprite(i);
+
+		return textures;
 	}
 
 	private Point calcGlobalSector(int x, int y) {
@@ -94,141 +115,267 @@ public class LocalMap extends Map {
 		);
 	}
 
-	private Point calcLocalSector(int x, int y) {
-		if (sectors[0][0] == null)
-			return null;
+	// Which of the loaded sectors (0 to 2) a coordinate falls in along one axis, or -1 if it's outside them all
+	private int calcLocalSector(int coord, int offset) {
+		int local = coord - offset;
+		if (local < 0 || local >= super.sectorSize * 3)
+			return -1;
 
-		return new Point(
-			(x - sectors[0][0].offset.x) / super.sectorSize,
-			(y - sectors[0][0].offset.y) / super.sectorSize
-		);
+		return local / super.sectorSize;
 	}
 
 	public boolean setLocation(Point location) {
-		Point sector = this.calcLocalSector(location.x, location.y);
+		int sectorX = -1;
+		int sectorY = -1;
 
-		// No sectors are loaded yet, or the loaded ones are out-of-date
-		if (sector == null || sector.x < 0 || sector.x >= 3 || sector.y < 0 || sector.y >= 3) {
-			// Load all 9 sectors, around the current sector
-			sector = this.calcGlobalSector(location.x, location.y);
+		if (sectors[0][0] != null) {
+			sectorX = this.calcLocalSector(location.x, sectors[0][0].offset.x);
+			sectorY = this.calcLocalSector(location.y, sectors[0][0].offset.y);
+		}
+
+		Point sector = this.calcGlobalSector(location.x, location.y);
 
+		// No sectors are loaded yet, or the loaded ones are out-of-date
+		if (sectorX == -1 || sectorY == -1) {
+			// There's nothing we could show in the meantime, so wait for all 9 sectors around the current sector
 			for (int y = 0;y < 3;y++) {
 				for (int x = 0;x < 3;x++) {
 					Point offset = new Point(sector.x + ((x - 1) * super.sectorSize), sector.y + ((y - 1) * super.sectorSize));
-					sectors[x][y] = LocalMapSector.load(mapResource, offset);
+					sectors[x][y] = loader.load(offset);
 				}
 			}
 
-			this.updateBuffers();
+			this.sectorsChanged(sector, location);
 			return true;
 		}
 
 		// The sectors are loaded, and we're still in the middle
-		if (sector.x == 1 && sector.y == 1)
+		if (sectorX == 1 && sectorY == 1) {
+			this.prefetch(sector, location);
 			return false;
+		}
 
-		// TODO: we've moved, load/swap some sectors...
+		// We've moved into one of the outer sectors, so slide everything over to keep it in the middle
+		int shiftX = sectorX - 1;
+		int shiftY = sectorY - 1;
 
-		this.updateBuffers();
+		LocalMapSector[][] old = new LocalMapSector[3][3];
+		for (int x = 0;x < 3;x++)
+			System.arraycopy(sectors[x], 0, old[x], 0, 3);
+
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				int oldX = x + shiftX;
+				int oldY = y + shiftY;
+
+				// Keep any sectors we already have, anything new comes from the loader (or is a placeholder until it has loaded)
+				if (oldX >= 0 && oldX < 3 && oldY >= 0 && oldY < 3)
+					sectors[x][y] = old[oldX][oldY];
+				else
+					sectors[x][y] = loader.poll(new Point(sector.x + ((x - 1) * super.sectorSize), sector.y + ((y - 1) * super.sectorSize)));
+			}
+		}
+
+		this.sectorsChanged(sector, location);
 		return true;
 	}
 
-	private void updateBuffers() {
-		// We've nothing loaded
+	// Swaps in any sectors which have finished loading since we last looked, returns true if anything changed
+	public boolean update() {
 		if (sectors[0][0] == null)
-			return;
+			return false;
 
-		int mapSize = super.sectorSize * 3;
-		Point start = sectors[0][0].offset;
-		Point end = new Point(start.x + mapSize , start.y + mapSize);
+		boolean changed = false;
 
-		// Generate a list of tiles, walls, and roofs to be drawn
-		List<Quad> tiles = new LinkedList<Quad>();
-		List<Quad> overlays = new LinkedList<Quad>();
-		List<Quad> walls = new LinkedList<Quad>();
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (sectors[x][y].isLoaded())
+					continue;
 
-		// For each tile, decide what elements should be drawn
-		for (int y = start.y;y < end.y;y++) {
-			for (int x = start.x;x < end.x;x++) {
-				LocalTile tile = this.getTile(x, y);
-				Dimension texture = tileTextures.getSprite(tile == null ? 0 : tile.getTexture());
+				LocalMapSector sector = loader.poll(sectors[x][y].offset);
+				if (!sector.isLoaded())
+					continue;
 
-				// TODO: Elevation
+				sectors[x][y] = sector;
+				changed = true;
+			}
+		}
 
-				tiles.add(new Quad(
-					new Vertex(x, 0, -y, texture.x1, texture.y2),			// front left
-					new Vertex(x, 0, -y - 1, texture.x1, texture.y1),		// back left
-					new Vertex(x + 1, 0, -y - 1, texture.x2, texture.y1),	// back right
-					new Vertex(x + 1, 0, -y, texture.x2, texture.y2)		// front right
-				));
+		if (changed) {
+			this.updateCollision();
+			this.updateBuffers();
+		}
 
-				if (tile == null)
-					continue;
+		return changed;
+	}
 
-				if (tile.hasOverlay()) {
-					texture = overlayTextures.getSprite(tile.getOverlay());
+	private void sectorsChanged(Point sector, Point location) {
+		// Anything more than a sector outside the window won't be needed any time soon
+		loader.retain(
+			new Point(sector.x - (super.sectorSize * 2), sector.y - (super.sectorSize * 2)),
+			new Point(sector.x + (super.sectorSize * 2), sector.y + (super.sectorSize * 2))
+		);
 
-					overlays.add(new Quad(
-						new Vertex(x, 0, -y, texture.x1, texture.y2),			// front left
-						new Vertex(x, 0, -y - 1, texture.x1, texture.y1),		// back left
-						new Vertex(x + 1, 0, -y - 1, texture.x2, texture.y1),	// back right
-						new Vertex(x + 1, 0, -y, texture.x2, texture.y2)		// front right
-					));
-				}
+		this.updateCollision();
+		this.updateBuffers();
+		this.prefetch(sector, location);
+	}
+
+	private void updateCollision() {
+		// Path finding only ever looks at the loaded sectors, so that's all we need to check steps against
+		Point offset = sectors[0][0].offset;
+		collision = CollisionMap.build(this, offset.x, offset.y, super.sectorSize * 3, super.sectorSize * 3);
+	}
 
-				if (tile.hasHWall()) {
-					texture = wallTextures.getSprite(tile.getHWall());
+	// When we get near the edge of the middle sector, start loading the sectors past the window on that side
+	// so they're ready by the time we cross over
+	private void prefetch(Point sector, Point location) {
+		int directionX = 0;
+		int directionY = 0;
+
+		if (location.x - sector.x < PREFETCH_DISTANCE)
+			directionX = -1;
+		else if (location.x - sector.x >= super.sectorSize - PREFETCH_DISTANCE)
+			directionX = 1;
+
+		if (location.y - sector.y < PREFETCH_DISTANCE)
+			directionY = -1;
+		else if (location.y - sector.y >= super.sectorSize - PREFETCH_DISTANCE)
+			directionY = 1;
+
+		// The column and/or row of sectors just past the window on that side, and the corner between them if we're heading diagonally
+		if (directionX != 0) {
+			for (int y = -1;y <= 1;y++)
+				this.prefetch(sector, directionX * 2, y);
+		}
 
-					walls.add(new Quad(
-						new Vertex(x, 0, -y - 1, texture.x1, texture.y2),							// bottom left
-						new Vertex(x, LocalTile.WALL_HEIGHT, -y - 1, texture.x1, texture.y1),		// top left
-						new Vertex(x + 1, LocalTile.WALL_HEIGHT, -y - 1, texture.x2, texture.y1),	// top right
-						new Vertex(x + 1, 0, -y - 1, texture.x2, texture.y2)						// bottom right
-					));
-				}
+		if (directionY != 0) {
+			for (int x = -1;x <= 1;x++)
+				this.prefetch(sector, x, directionY * 2);
+		}
+
+		if (directionX != 0 && directionY != 0)
+			this.prefetch(sector, directionX * 2, directionY * 2);
+	}
+
+	// Starts loading the sector the given number of sectors away from the given sector, if it's on the map
+	private void prefetch(Point sector, int x, int y) {
+		Point offset = new Point(sector.x + (x * super.sectorSize), sector.y + (y * super.sectorSize));
+		if (offset.x < 0 || offset.y < 0 || offset.x >= super.getWidth() || offset.y >= super.getHeight())
+			return;
+
+		loader.request(offset);
+	}
+
+	private void updateBuffers() {
+		// We've nothing loaded
+		if (sectors[0][0] == null)
+			return;
 
-				if (tile.hasVWall()) {
-					texture = wallTextures.getSprite(tile.getVWall());
+		SectorBuffers[][] old = new SectorBuffers[3][3];
+		for (int x = 0;x < 3;x++) {
+			System.arraycopy(buffers[x], 0, old[x], 0, 3);
+			Arrays.fill(buffers[x], null);
+		}
 
-					walls.add(new Quad(
-						new Vertex(x, 0, -y, texture.x1, texture.y2),								// bottom left
-						new Vertex(x, LocalTile.WALL_HEIGHT, -y, texture.x1, texture.y1),			// top left
-						new Vertex(x, LocalTile.WALL_HEIGHT, -y - 1, texture.x2, texture.y1),		// top right
-						new Vertex(x, 0, -y - 1, texture.x2, texture.y2)							// bottom right
-					));
+		// Sectors which are still loaded keep their buffers, wherever they are now, only new ones are built
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				for (int oldY = 0;oldY < 3 && buffers[x][y] == null;oldY++) {
+					for (int oldX = 0;oldX < 3 && buffers[x][y] == null;oldX++) {
+						if (old[oldX][oldY] == null || old[oldX][oldY].sector != sectors[x][y])
+							continue;
+
+						buffers[x][y] = old[oldX][oldY];
+						old[oldX][oldY] = null;
+					}
 				}
+
+				if (buffers[x][y] == null)
+					buffers[x][y] = this.createBuffers(sectors[x][y]);
 			}
 		}
 
-		if (tileBuffer != null)
-			tileBuffer.destroy();
-
-		tileBuffer = tiles.isEmpty() ? null : new QuadBuffer(tiles, tileTextures.sprite);
+		// Anything left over has gone out of the window
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (old[x][y] != null)
+					old[x][y].destroy();
+			}
+		}
+	}
 
-		if (overlayBuffer != null)
-			overlayBuffer.destroy();
+	private SectorBuffers createBuffers(LocalMapSector sector) {
+		meshBuilder.build(sector);
 
-		overlayBuffer = overlays.isEmpty() ? null : new QuadBuffer(overlays, overlayTextures.sprite);
+		return new SectorBuffers(
+			sector,
+			LocalMap.createBuffer(meshBuilder.getTiles(), tileTextures),
+			LocalMap.createBuffer(meshBuilder.getOverlays(), overlayTextures),
+			LocalMap.createBuffer(meshBuilder.getWalls(), wallTextures)
+		);
+	}
 
-		if (wallBuffer != null)
-			wallBuffer.destroy();
+	private static QuadBuffer createBuffer(TerrainMesh mesh, SpriteMap textures) {
+		if (mesh.isEmpty())
+			return null;
 
-		wallBuffer = walls.isEmpty() ? null : new QuadBuffer(walls, wallTextures.sprite);
+		return new QuadBuffer(mesh.getVertices(), mesh.getTextureCoords(), mesh.getQuadCount(), textures.sprite);
 	}
 
 	public void draw() {
-		if (tileBuffer != null)
-			tileBuffer.display();
+		// Each layer is drawn for every sector before the next, so overlays and walls always end up on top
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (buffers[x][y] != null && buffers[x][y].tiles != null)
+					buffers[x][y].tiles.display();
+			}
+		}
 
-		if (overlayBuffer != null)
-			overlayBuffer.display();
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (buffers[x][y] != null && buffers[x][y].overlays != null)
+					buffers[x][y].overlays.display();
+			}
+		}
 
-		if (wallBuffer != null)
-			wallBuffer.display();
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (buffers[x][y] != null && buffers[x][y].walls != null)
+					buffers[x][y].walls.display();
+			}
+		}
 	}
 
 	public boolean isTileBuffer(Pickable item) {
-		return item == tileBuffer || item == overlayBuffer;
+		for (int y = 0;y < 3;y++) {
+			for (int x = 0;x < 3;x++) {
+				if (buffers[x][y] != null && (item == buffers[x][y].tiles || item == buffers[x][y].overlays))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	public LocalMapSectorCache getSectorCache() {
+		return loader.getCache();
+	}
+
+	// The sector starting at the given offset, either from the window or the cache, or null if it isn't on the map
+	// NOTE: This never waits, if the sector isn't loaded yet it's requested and a placeholder is returned in the meantime
+	public LocalMapSector getSector(Point offset) {
+		if (offset.x < 0 || offset.y < 0 || offset.x >= super.getWidth() || offset.y >= super.getHeight())
+			return null;
+
+		if (sectors[0][0] != null) {
+			int sectorX = this.calcLocalSector(offset.x, sectors[0][0].offset.x);
+			int sectorY = this.calcLocalSector(offset.y, sectors[0][0].offset.y);
+			if (sectorX != -1 && sectorY != -1)
+				return sectors[sectorX][sectorY];
+		}
+
+		return loader.poll(offset);
 	}
 
 	public Point getOffset() {
@@ -240,11 +387,15 @@ public class LocalMap extends Map {
 
 	@Override
 	public LocalTile getTile(int x, int y) {
-		Point sector = this.calcLocalSector(x, y);
-		if (sector == null || sector.x < 0 || sector.x >= 3 || sector.y < 0 || sector.y >= 3)
+		if (sectors[0][0] == null)
+			return null;
+
+		int sectorX = this.calcLocalSector(x, sectors[0][0].offset.x);
+		int sectorY = this.calcLocalSector(y, sectors[0][0].offset.y);
+		if (sectorX == -1 || sectorY == -1)
 			return null;
 
-		return sectors[sector.x][sector.y].getTile(x, y);
+		return sectors[sectorX][sectorY].getTile(x, y);
 	}
 
 	@Override
@@ -0,0 +1,150 @@
+package com.game.client.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.game.common.model.MapFile;
+import com.game.common.model.Point;
+
+// Loads map sectors on a background thread, so the render thread never has to wait for them
+// Everything loaded goes into the cache, and anything already in the cache is never loaded again
+// NOTE: Apart from the loading itself, this should only be used from the render thread
+public class LocalMapLoader {
+
+	protected final MapFile mapFile;
+	protected final LocalMapSectorCache cache;
+	protected final ExecutorService executor;
+	protected final Map<Point, Future<LocalMapSector>> sectors; // keyed by sector offset, both loading and loaded
+	protected final Map<Point, LocalMapSector> placeholders; // what to show for each sector still loading, so polling doesn't create a new one every frame
+
+	public LocalMapLoader(MapFile mapFile, LocalMapSectorCache cache) {
+		this.mapFile = mapFile;
+		this.cache = cache;
+
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "map-loader");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
+		sectors = new HashMap<Point, Future<LocalMapSector>>();
+		placeholders = new HashMap<Point, LocalMapSector>();
+	}
+
+	public LocalMapSectorCache getCache() {
+		return cache;
+	}
+
+	// Starts loading the sector at the given offset, unless it's already cached or loading
+	public void request(Point offset) {
+		if (sectors.containsKey(offset) || cache.contains(offset))
+			return;
+
+		this.submit(offset);
+	}
+
+	// Returns the sector at the given offset if it's cached or has finished loading, otherwise a placeholder with no tiles while it loads
+	public LocalMapSector poll(Point offset) {
+		Future<LocalMapSector> future = sectors.get(offset);
+		if (future == null) {
+			LocalMapSector sector = cache.get(offset);
+			if (sector != null)
+				return sector;
+
+			future = this.submit(offset);
+		}
+
+		if (!future.isDone()) {
+			LocalMapSector placeholder = placeholders.get(offset);
+			if (placeholder == null) {
+				placeholder = LocalMapSector.placeholder(offset, mapFile.getSectorSize());
+				placeholders.put(offset, placeholder);
+			}
+
+			return placeholder;
+		}
+
+		return this.complete(offset);
+	}
+
+	// Returns the sector at the given offset, waiting for it to load if need be
+	public LocalMapSector load(Point offset) {
+		if (!sectors.containsKey(offset)) {
+			LocalMapSector sector = cache.get(offset);
+			if (sector != null)
+				return sector;
+
+			this.submit(offset);
+		}
+
+		return this.complete(offset);
+	}
+
+	private Future<LocalMapSector> submit(final Point offset) {
+		Future<LocalMapSector> future = executor.submit(new Callable<LocalMapSector>() {
+			@Override
+			public LocalMapSector call() {
+				return LocalMapSector.load(mapFile, offset);
+			}
+		});
+
+		sectors.put(offset, future);
+		return future;
+	}
+
+	// Takes a loaded (or loading) sector out of the queue and into the cache
+	private LocalMapSector complete(Point offset) {
+		placeholders.remove(offset);
+
+		LocalMapSector sector = LocalMapLoader.get(offset, sectors.remove(offset));
+		cache.put(sector);
+
+		return sector;
+	}
+
+	// Forgets about any sectors outside the given area (of sector offsets), they're too far away to be needed soon
+	public void retain(Point min, Point max) {
+		for (Iterator<Map.Entry<Point, Future<LocalMapSector>>> it = sectors.entrySet().iterator();it.hasNext();) {
+			Map.Entry<Point, Future<LocalMapSector>> entry = it.next();
+
+			Point offset = entry.getKey();
+			if (offset.x >= min.x && offset.x <= max.x && offset.y >= min.y && offset.y <= max.y)
+				continue;
+
+			entry.getValue().cancel(false);
+			placeholders.remove(offset);
+			it.remove();
+		}
+	}
+
+	public void destroy() {
+		executor.shutdownNow();
+		sectors.clear();
+		placeholders.clear();
+	}
+
+	private static LocalMapSector get(Point offset, Future<LocalMapSector> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			// fatal error
+			throw new RuntimeException("Interrupted while loading map sector " + offset, e);
+		}
+		catch (ExecutionException e) {
+			// fatal error
+			throw new RuntimeException("Error loading map sector " + offset, e.getCause());
+		}
+	}
+}
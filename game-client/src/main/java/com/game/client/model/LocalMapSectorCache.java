@@ -0,0 +1,103 @@
+package com.game.client.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.game.common.model.Point;
+
+// The most recently used sectors, so walking back over somewhere we've just been doesn't load it again
+// Sized by a rough memory budget rather than a number of sectors, since how big a sector is depends on the map
+public class LocalMapSectorCache {
+
+	public static final long DEFAULT_BUDGET = 4 * 1024 * 1024; // in bytes
+	public static final int MIN_SECTORS = 25; // enough for the 3x3 window and everything prefetched around it
+
+	protected static final int TILE_SIZE_ESTIMATE = 28; // a LocalTile object, and the reference to it
+
+	// Roughly how many bytes of heap a loaded sector takes
+	public static long estimateSize(int sectorSize) {
+		return ((long) sectorSize * sectorSize * TILE_SIZE_ESTIMATE) + (sectorSize * 16);
+	}
+
+	protected final int maxSectors;
+	protected final Map<Point, LocalMapSector> sectors;
+	protected long hits;
+	protected long misses;
+	protected long evictions;
+
+	public LocalMapSectorCache(long budget, int sectorSize) {
+		maxSectors = (int) Math.max(MIN_SECTORS, budget / LocalMapSectorCache.estimateSize(sectorSize));
+
+		// Access ordered, so the eldest entry is the least recently used
+		sectors = new LinkedHashMap<Point, LocalMapSector>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Point, LocalMapSector> eldest) {
+				if (this.size() <= maxSectors)
+					return false;
+
+				evictions++;
+				return true;
+			}
+		};
+
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public synchronized LocalMapSector get(Point offset) {
+		LocalMapSector sector = sectors.get(offset);
+		if (sector == null)
+			misses++;
+		else
+			hits++;
+
+		return sector;
+	}
+
+	// Doesn't count as a use, or a hit or miss
+	public synchronized boolean contains(Point offset) {
+		return sectors.containsKey(offset);
+	}
+
+	public synchronized void put(LocalMapSector sector) {
+		// Placeholders would just hide the real thing
+		if (!sector.isLoaded())
+			return;
+
+		sectors.put(sector.offset, sector);
+	}
+
+	public synchronized int size() {
+		return sectors.size();
+	}
+
+	public int getMaxSize() {
+		return maxSectors;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "sectors[size = " + sectors.size() + "/" + maxSectors + ", hits = " + hits + ", misses = " + misses + ", evictions = " + evictions + "]";
+	}
+}
@@ -0,0 +1,108 @@
+package com.game.client.model;
+
+import com.game.graphics.math.Dimension;
+
+// Quads written straight into flat arrays, ready to be copied into a QuadBuffer
+// Each quad is 4 vertices: bottom left, top left, top right, bottom right
+public class TerrainMesh {
+
+	public static final int VERTICES_PER_QUAD = 4;
+
+	protected float[] vertices;			// x, y, z for each vertex
+	protected float[] textureCoords;	// u, v for each vertex
+	protected int quads;
+
+	public TerrainMesh(int capacity) {
+		vertices = new float[capacity * VERTICES_PER_QUAD * 3];
+		textureCoords = new float[capacity * VERTICES_PER_QUAD * 2];
+		quads = 0;
+	}
+
+	// Forgets the quads, but keeps the arrays to be written over
+	public void clear() {
+		quads = 0;
+	}
+
+	public boolean isEmpty() {
+		return quads == 0;
+	}
+
+	public int getQuadCount() {
+		return quads;
+	}
+
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	public float[] getTextureCoords() {
+		return textureCoords;
+	}
+
+	// Flat on the ground, covering tile (x, y)
+	public void addFloor(int x, int y, Dimension texture) {
+		this.ensureCapacity(quads + 1);
+
+		int vertex = quads * VERTICES_PER_QUAD;
+
+		this.putVertex(vertex + 0, x, 0, -y, texture.x1, texture.y2);			// front left
+		this.putVertex(vertex + 1, x, 0, -y - 1, texture.x1, texture.y1);		// back left
+		this.putVertex(vertex + 2, x + 1, 0, -y - 1, texture.x2, texture.y1);	// back right
+		this.putVertex(vertex + 3, x + 1, 0, -y, texture.x2, texture.y2);		// front right
+
+		quads++;
+	}
+
+	// Along the back edge of tile (x, y)
+	public void addHWall(int x, int y, int height, Dimension texture) {
+		this.ensureCapacity(quads + 1);
+
+		int vertex = quads * VERTICES_PER_QUAD;
+
+		this.putVertex(vertex + 0, x, 0, -y - 1, texture.x1, texture.y2);			// bottom left
+		this.putVertex(vertex + 1, x, height, -y - 1, texture.x1, texture.y1);		// top left
+		this.putVertex(vertex + 2, x + 1, height, -y - 1, texture.x2, texture.y1);	// top right
+		this.putVertex(vertex + 3, x + 1, 0, -y - 1, texture.x2, texture.y2);		// bottom right
+
+		quads++;
+	}
+
+	// Along the left edge of tile (x, y)
+	public void addVWall(int x, int y, int height, Dimension texture) {
+		this.ensureCapacity(quads + 1);
+
+		int vertex = quads * VERTICES_PER_QUAD;
+
+		this.putVertex(vertex + 0, x, 0, -y, texture.x1, texture.y2);				// bottom left
+		this.putVertex(vertex + 1, x, height, -y, texture.x1, texture.y1);			// top left
+		this.putVertex(vertex + 2, x, height, -y - 1, texture.x2, texture.y1);		// top right
+		this.putVertex(vertex + 3, x, 0, -y - 1, texture.x2, texture.y2);			// bottom right
+
+		quads++;
+	}
+
+	private void putVertex(int vertex, float x, float y, float z, float u, float v) {
+		vertices[vertex * 3] = x;
+		vertices[(vertex * 3) + 1] = y;
+		vertices[(vertex * 3) + 2] = z;
+
+		textureCoords[vertex * 2] = u;
+		textureCoords[(vertex * 2) + 1] = v;
+	}
+
+	protected void ensureCapacity(int capacity) {
+		if (vertices.length >= capacity * VERTICES_PER_QUAD * 3)
+			return;
+
+		// Grow by at least double, so adding quads one at a time stays cheap
+		int size = Math.max(capacity, (vertices.length / (VERTICES_PER_QUAD * 3)) * 2);
+
+		float[] newVertices = new float[size * VERTICES_PER_QUAD * 3];
+		System.arraycopy(vertices, 0, newVertices, 0, quads * VERTICES_PER_QUAD * 3);
+		vertices = newVertices;
+
+		float[] newTextureCoords = new float[size * VERTICES_PER_QUAD * 2];
+		System.arraycopy(textureCoords, 0, newTextureCoords, 0, quads * VERTICES_PER_QUAD * 2);
+		textureCoords = newTextureCoords;
+	}
+}
@@ -0,0 +1,95 @@
+package com.game.client.model;
+
+import com.game.graphics.math.Dimension;
+
+// Builds the tile, overlay and wall quads for one sector at a time
+// NOTE: This doesn't touch OpenGL, the meshes are turned into buffers by whoever asked for them
+public class TerrainMeshBuilder {
+
+	// The texture coordinates of each sprite in a sprite map, indexed the same as the tiles refer to them
+	protected final Dimension[] tileTextures;
+	protected final Dimension[] overlayTextures;
+	protected final Dimension[] wallTextures;
+
+	// Reused by every build, so rebuilding a sector doesn't allocate anything once they're big enough
+	protected final TerrainMesh tiles;
+	protected final TerrainMesh overlays;
+	protected final TerrainMesh walls;
+
+	public TerrainMeshBuilder(Dimension[] tileTextures, Dimension[] overlayTextures, Dimension[] wallTextures) {
+		this.tileTextures = tileTextures;
+		this.overlayTextures = overlayTextures;
+		this.wallTextures = wallTextures;
+
+		tiles = new TerrainMesh(0);
+		overlays = new TerrainMesh(0);
+		walls = new TerrainMesh(0);
+	}
+
+	public void build(LocalMapSector sector) {
+		tiles.clear();
+		overlays.clear();
+		walls.clear();
+
+		Dimension missing = TerrainMeshBuilder.getTexture(tileTextures, 0);
+
+		// For each tile, decide what elements should be drawn
+		for (int y = sector.offset.y;y < sector.offset.y + sector.getSectorSize();y++) {
+			for (int x = sector.offset.x;x < sector.offset.x + sector.getSectorSize();x++) {
+				LocalTile tile = sector.getTile(x, y);
+
+				// TODO: Elevation
+
+				// Anywhere without a tile (off the map, or still loading) still gets the default floor
+				if (tile == null) {
+					if (missing != null)
+						tiles.addFloor(x, y, missing);
+
+					continue;
+				}
+
+				Dimension texture = TerrainMeshBuilder.getTexture(tileTextures, tile.getTexture());
+				if (texture != null)
+					tiles.addFloor(x, y, texture);
+
+				if (tile.hasOverlay()) {
+					texture = TerrainMeshBuilder.getTexture(overlayTextures, tile.getOverlay());
+					if (texture != null)
+						overlays.addFloor(x, y, texture);
+				}
+
+				if (tile.hasHWall()) {
+					texture = TerrainMeshBuilder.getTexture(wallTextures, tile.getHWall());
+					if (texture != null)
+						walls.addHWall(x, y, LocalTile.WALL_HEIGHT, texture);
+				}
+
+				if (tile.hasVWall()) {
+					texture = TerrainMeshBuilder.getTexture(wallTextures, tile.getVWall());
+					if (texture != null)
+						walls.addVWall(x, y, LocalTile.WALL_HEIGHT, texture);
+				}
+			}
+		}
+	}
+
+	// An unknown sprite has nothing to draw
+	private static Dimension getTexture(Dimension[] textures, int index) {
+		if (index < 0 || index >= textures.length)
+			return null;
+
+		return textures[index];
+	}
+
+	public TerrainMesh getTiles() {
+		return tiles;
+	}
+
+	public TerrainMesh getOverlays() {
+		return overlays;
+	}
+
+	public TerrainMesh getWalls() {
+		return walls;
+	}
+}
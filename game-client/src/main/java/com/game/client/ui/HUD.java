@@ -6,6 +6,7 @@ import java.awt.event.ActionListener;
 
 import com.game.client.Client;
 import com.game.client.WorldManager;
+import com.game.client.model.LocalMapSectorCache;
 import com.game.client.ui.menu.Friends;
 import com.game.client.ui.menu.Inventory;
 import com.game.client.ui.menu.Magic;
@@ -275,10 +276,14 @@ public class HUD extends Window implements ActionListener {
 			inputBox.displayWidget(g, (client.width / 2) - 300, (client.height / 2) - 15);
 		}
 
-		// If enabled, show the current FPS
+		// If enabled, show the current FPS and how well the map sector cache is doing
 		if (showFPS) {
 			String currentFPS = "FPS: " + client.getCurrentFPS();
 			g.drawString(currentFPS, client.width - g.getFontWidth(currentFPS) - 4, g.getFontHeight(), Color.YELLOW);
+
+			LocalMapSectorCache cache = world.getMap().getSectorCache();
+			String sectors = "Sectors: " + cache.size() + "/" + cache.getMaxSize() + ", hits: " + cache.getHits() + ", misses: " + cache.getMisses() + ", evictions: " + cache.getEvictions();
+			g.drawString(sectors, client.width - g.getFontWidth(sectors) - 4, g.getFontHeight() * 2, Color.YELLOW);
 		}
 	}
 
@@ -74,6 +74,12 @@ public class LoginWindow extends Window implements ActionListener {
 		loadingBox = null;
 	}
 
+	public synchronized void queued(int position) {
+		log.info("Waiting to login, position " + position + " in queue");
+
+		loadingBox = new LoadingBox("Position " + position + " in queue.", (client.width / 2) - 140, (client.height / 2) - 40, 280, 80);
+	}
+
 	public void update(long now) {
 		if (loadingBox != null) {
 			loadingBox.update(now);
@@ -5,6 +5,7 @@ import java.awt.Color;
 import com.game.client.WorldManager;
 import com.game.client.engine.Camera;
 import com.game.client.model.LocalMap;
+import com.game.client.model.LocalMapSector;
 import com.game.client.model.LocalTile;
 import com.game.client.model.Player;
 import com.game.client.ui.Menu;
@@ -67,13 +68,24 @@ public class MiniMap extends Menu {
 
 		Point start = new Point(location.x - HALF_MAP_SIZE, location.y - HALF_MAP_SIZE);
 
-		// draw all the map tiles
-		for (int y = 0;y < MAP_SIZE;y++) {
-			for (int x = 0;x < MAP_SIZE;x++) {
-				LocalTile t = map.getTile(start.x + x, start.y + y);
-				Color c = (t == null) ? Color.BLACK : Color.GREEN; // TODO: Tile color
+		// draw all the map tiles, a sector at a time since we can see further than the map has loaded
+		int sectorSize = map.getSectorSize();
+		int firstX = start.x - (((start.x % sectorSize) + sectorSize) % sectorSize);
+		int firstY = start.y - (((start.y % sectorSize) + sectorSize) % sectorSize);
 
-				mapSprite.fillRect(x * 3, y * 3, 3, 3, c);
+		for (int sectorY = firstY;sectorY < start.y + MAP_SIZE;sectorY += sectorSize) {
+			for (int sectorX = firstX;sectorX < start.x + MAP_SIZE;sectorX += sectorSize) {
+				LocalMapSector sector = map.getSector(new Point(sectorX, sectorY));
+
+				// Only the part of the sector which is on the minimap
+				for (int y = Math.max(sectorY, start.y);y < Math.min(sectorY + sectorSize, start.y + MAP_SIZE);y++) {
+					for (int x = Math.max(sectorX, start.x);x < Math.min(sectorX + sectorSize, start.x + MAP_SIZE);x++) {
+						LocalTile t = (sector == null) ? null : sector.getTile(x, y);
+						Color c = (t == null) ? Color.BLACK : Color.GREEN; // TODO: Tile color
+
+						mapSprite.fillRect((x - start.x) * 3, (y - start.y) * 3, 3, 3, c);
+					}
+				}
 			}
 		}
 
@@ -123,7 +135,7 @@ public class MiniMap extends Menu {
 			return;
 
 		// Send a walk request
-		world.sendWalkTo(path);
+		world.sendWalkTo(target);
 	}
 
 	private Point calcClickTarget(int x, int y) {
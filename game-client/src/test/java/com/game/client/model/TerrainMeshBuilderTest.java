@@ -0,0 +1,99 @@
+package com.game.client.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.game.common.model.Point;
+import com.game.graphics.math.Dimension;
+
+public class TerrainMeshBuilderTest extends TestCase {
+
+	private static final int SECTOR_SIZE = 4;
+
+	private static LocalTile createTile(int texture, int overlay, int hWall, int vWall) throws IOException {
+		// elevation, texture, overlay, hWall, vWall
+		return new LocalTile(new DataInputStream(new ByteArrayInputStream(new byte[] { 0, (byte) texture, (byte) overlay, (byte) hWall, (byte) vWall })));
+	}
+
+	private static Dimension[] createTextures(int count) {
+		Dimension[] textures = new Dimension[count];
+		for (int i = 0;i < count;i++)
+			textures[i] = new Dimension(i, i + 0.25f, i + 0.5f, i + 0.75f);
+
+		return textures;
+	}
+
+	private static TerrainMeshBuilder createBuilder() {
+		return new TerrainMeshBuilder(createTextures(4), createTextures(4), createTextures(4));
+	}
+
+	public void testEmptySector() {
+		TerrainMeshBuilder builder = createBuilder();
+		builder.build(LocalMapSector.placeholder(new Point(8, 4), SECTOR_SIZE));
+
+		// Every tile still gets a floor, and nothing else
+		assertEquals(SECTOR_SIZE * SECTOR_SIZE, builder.getTiles().getQuadCount());
+		assertTrue(builder.getOverlays().isEmpty());
+		assertTrue(builder.getWalls().isEmpty());
+
+		// The first floor is the front left tile, at (8, 4)
+		float[] vertices = builder.getTiles().getVertices();
+		assertEquals(8f, vertices[0]);
+		assertEquals(0f, vertices[1]);
+		assertEquals(-4f, vertices[2]);
+	}
+
+	public void testTileLayers() throws Exception {
+		LocalTile[][] tiles = new LocalTile[SECTOR_SIZE][SECTOR_SIZE];
+		for (int x = 0;x < SECTOR_SIZE;x++) {
+			for (int y = 0;y < SECTOR_SIZE;y++)
+				tiles[x][y] = createTile(1, 0, 0, 0);
+		}
+
+		// One tile with an overlay (sprite 1) and both walls (sprites 2 and 0)
+		tiles[2][1] = createTile(3, 2, 3, 1);
+
+		TerrainMeshBuilder builder = createBuilder();
+		builder.build(new LocalMapSector(new Point(0, 0), SECTOR_SIZE, tiles));
+
+		assertEquals(SECTOR_SIZE * SECTOR_SIZE, builder.getTiles().getQuadCount());
+		assertEquals(1, builder.getOverlays().getQuadCount());
+		assertEquals(2, builder.getWalls().getQuadCount());
+
+		// The overlay covers tile (2, 1), with the overlay's texture
+		float[] vertices = builder.getOverlays().getVertices();
+		float[] textureCoords = builder.getOverlays().getTextureCoords();
+		assertEquals(2f, vertices[0]);
+		assertEquals(-1f, vertices[2]);
+		assertEquals(3f, vertices[6]);
+		assertEquals(-2f, vertices[8]);
+		assertEquals(1f, textureCoords[0]);
+		assertEquals(1.75f, textureCoords[1]);
+
+		// The horizontal wall runs along the back of the tile, and is tall
+		vertices = builder.getWalls().getVertices();
+		assertEquals(-2f, vertices[2]);
+		assertEquals((float) LocalTile.WALL_HEIGHT, vertices[4]);
+		assertEquals(3f, vertices[6]);
+
+		// The vertical wall runs along the left of the tile
+		assertEquals(2f, vertices[12]);
+		assertEquals(2f, vertices[18]);
+		assertEquals(-2f, vertices[20]);
+	}
+
+	public void testReusesMeshes() {
+		TerrainMeshBuilder builder = createBuilder();
+
+		builder.build(LocalMapSector.placeholder(new Point(0, 0), SECTOR_SIZE));
+		float[] vertices = builder.getTiles().getVertices();
+
+		// Building another sector the same size writes over the same arrays
+		builder.build(LocalMapSector.placeholder(new Point(SECTOR_SIZE, 0), SECTOR_SIZE));
+		assertSame(vertices, builder.getTiles().getVertices());
+		assertEquals((float) SECTOR_SIZE, vertices[0]);
+	}
+}
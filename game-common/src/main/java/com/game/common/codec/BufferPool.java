@@ -0,0 +1,55 @@
+package com.game.common.codec;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.buffer.IoBuffer;
+
+// A bounded pool of auto-expanding heap buffers, shared between threads
+public class BufferPool {
+
+	protected final int capacity;
+	protected final int maxCapacity;
+	protected final int maxSize;
+
+	protected final Queue<IoBuffer> buffers;
+	protected final AtomicInteger size;
+
+	public BufferPool(int capacity, int maxCapacity, int maxSize) {
+		this.capacity = capacity;
+		this.maxCapacity = maxCapacity;
+		this.maxSize = maxSize;
+
+		buffers = new ConcurrentLinkedQueue<IoBuffer>();
+		size = new AtomicInteger();
+	}
+
+	public IoBuffer acquire() {
+		IoBuffer buffer = buffers.poll();
+		// The pool is empty, so create a new buffer
+		if (buffer == null)
+			return IoBuffer.allocate(capacity, false).setAutoExpand(true);
+
+		size.decrementAndGet();
+		return buffer.clear();
+	}
+
+	public void release(IoBuffer buffer) {
+		// Don't hang on to buffers which have grown too large
+		if (buffer.capacity() > maxCapacity)
+			return;
+
+		// The pool is already full, let this one be collected
+		if (size.incrementAndGet() > maxSize) {
+			size.decrementAndGet();
+			return;
+		}
+
+		buffers.offer(buffer);
+	}
+
+	public int size() {
+		return size.get();
+	}
+}
@@ -24,17 +24,27 @@ public class Packet {
 	private static final Logger log = LoggerFactory.getLogger(Packet.class);
 
 	public static final int HEADER_SIZE = 4 + 4; // type + size
+	public static final int MAX_SIZE = 1 << 20; // anything bigger is refused, rather than buffered until it all arrives
+	public static final int MAX_POOLED_CAPACITY = 16384;
+	public static final int MAX_POOLED_BUFFERS = 512;
+
+	// Player updates pack a slot and direction in to a short, an absolute direction is followed by a point
+	public static final int MAX_PLAYER_SLOTS = 1 << 12;
+	public static final int ABSOLUTE_DIRECTION = 0xf;
 
 	protected static final CharsetDecoder stringDecoder;
+	protected static final BufferPool pool;
 
 	static {
 		stringDecoder = Charset.forName("UTF-8").newDecoder();
+		pool = new BufferPool(PacketBuilder.DEFAULT_CAPACITY, MAX_POOLED_CAPACITY, MAX_POOLED_BUFFERS);
 	}
 
 	// X_SEND are packets from the client -> server
 	// X_RESPONSE are from the server -> client
 	public enum Type {
 		LOGIN_SEND,				LOGIN_RESPONSE,
+								LOGIN_QUEUE_RESPONSE,
 		PING_SEND,
 		CHAT_SEND,				CHAT_RESPONSE,
 								MESSAGE_RESPONSE,
@@ -53,14 +63,35 @@ public class Packet {
 		STAT_UPDATE_SEND,
 	}
 
+	// Copy a payload out of the given buffer into a pooled one, the packet should be released once it has been handled
+	public static Packet copyOf(Type type, IoBuffer in, int size, IoSession session) {
+		IoBuffer payload = pool.acquire();
+
+		int limit = in.limit();
+		in.limit(in.position() + size);
+
+		payload.put(in);
+		payload.flip();
+
+		in.limit(limit);
+
+		Packet packet = new Packet(type, payload, session);
+		packet.pooled = true;
+
+		return packet;
+	}
+
 	protected final Type type;
 	protected IoBuffer payload;
 	protected final IoSession session;
+	protected boolean pooled;
 
 	public Packet(Type type, IoBuffer payload, IoSession session) {
 		this.type = type;
 		this.payload = payload;
 		this.session = session;
+
+		pooled = false;
 	}
 
 	public IoSession getSession() {
@@ -81,9 +112,21 @@ public class Packet {
 	}
 
 	protected void setBytes(byte[] bytes) {
+		this.release();
 		payload = IoBuffer.wrap(bytes).asReadOnlyBuffer();
 	}
 
+	// Return the payload buffer to the pool, if it came from there - the packet can't be used after this
+	public void release() {
+		if (!pooled)
+			return;
+
+		pool.release(payload);
+
+		payload = null;
+		pooled = false;
+	}
+
 	public void decrypt(PrivateKey key) {
 		try {
 			Cipher cipher = Cipher.getInstance("RSA");
@@ -113,10 +156,7 @@ public class Packet {
 	}
 
 	public Hash getHash() {
-		byte[] data = new byte[Hash.LENGTH];
-		payload.get(data, 0, Hash.LENGTH);
-
-		return Hash.fromBytes(data);
+		return Hash.readFrom(payload);
 	}
 
 	public Point getPoint() {
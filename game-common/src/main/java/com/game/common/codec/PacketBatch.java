@@ -0,0 +1,47 @@
+package com.game.common.codec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// A group of packets which are encoded and written to the session together
+public class PacketBatch implements Iterable<PacketBuilder> {
+
+	protected final List<PacketBuilder> packets;
+
+	public PacketBatch() {
+		packets = new ArrayList<PacketBuilder>();
+	}
+
+	public void add(PacketBuilder packet) {
+		packets.add(packet);
+	}
+
+	public boolean isEmpty() {
+		return packets.isEmpty();
+	}
+
+	public int size() {
+		return packets.size();
+	}
+
+	// The total length of the batch once encoded, including packet headers
+	public int length() {
+		int length = 0;
+
+		for (PacketBuilder packet : packets)
+			length += Packet.HEADER_SIZE + packet.size();
+
+		return length;
+	}
+
+	@Override
+	public Iterator<PacketBuilder> iterator() {
+		return packets.iterator();
+	}
+
+	@Override
+	public String toString() {
+		return "batch[packets = " + packets.size() + "]";
+	}
+}
@@ -30,8 +30,11 @@ public class PacketBuilder extends Packet {
 		stringEncoder = Charset.forName("UTF-8").newEncoder();
 	}
 
+	// NOTE: A builder gives its buffer back to the pool once it has been encoded, so must only be written once
 	public PacketBuilder(Type type) {
-		super (type, IoBuffer.allocate(DEFAULT_CAPACITY).setAutoExpand(true), null);
+		super (type, pool.acquire(), null);
+
+		pooled = true;
 	}
 
 	public void putEnum(Enum<?> e) {
@@ -49,7 +52,7 @@ public class PacketBuilder extends Packet {
 	}
 
 	public void putHash(Hash hash) {
-		payload.put(hash.getBytes(), 0, Hash.LENGTH);
+		hash.writeTo(payload);
 	}
 
 	public void putPoint(Point p) {
@@ -118,7 +121,8 @@ public class PacketBuilder extends Packet {
 			byte[] decrypted = super.getBytes();
 			byte[] encrypted = cipher.doFinal(decrypted);
 
-			super.setBytes(encrypted);
+			super.release();
+			payload = IoBuffer.wrap(encrypted);
 			payload.position(encrypted.length);
 		}
 		catch (Exception e) {
@@ -133,4 +137,12 @@ public class PacketBuilder extends Packet {
 	public IoBuffer getPayload() {
 		return payload.getSlice(0, this.size()).asReadOnlyBuffer().rewind();
 	}
+
+	public void writeTo(IoBuffer buffer) {
+		// Copy straight out of the backing array if we can, to avoid creating a slice
+		if (payload.hasArray())
+			buffer.put(payload.array(), payload.arrayOffset(), this.size());
+		else
+			buffer.put(this.getPayload());
+	}
 }
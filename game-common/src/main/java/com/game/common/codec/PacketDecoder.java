@@ -3,12 +3,16 @@ package com.game.common.codec;
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
 import org.apache.mina.filter.codec.ProtocolDecoderOutput;
 
 import com.game.common.util.ISAACAlgorithm;
 
 public class PacketDecoder extends CumulativeProtocolDecoder {
 
+	// Cached, since values() creates a new copy of the array every call
+	protected static final Packet.Type[] types = Packet.Type.values();
+
 	@Override
 	public boolean doDecode(IoSession session, IoBuffer in, ProtocolDecoderOutput out) throws Exception {
 		if (in.remaining() < Packet.HEADER_SIZE)
@@ -19,6 +23,9 @@ public class PacketDecoder extends CumulativeProtocolDecoder {
 
 		int ordinal = in.getInt();
 		int size = in.getInt();
+		if (size < 0 || size > Packet.MAX_SIZE)
+			throw new ProtocolDecoderException("Invalid packet size: " + size);
+
 		// If we don't have enough data for the payload yet, reset back to before the header
 		if (in.remaining() < size) {
 			in.reset();
@@ -31,10 +38,12 @@ public class PacketDecoder extends CumulativeProtocolDecoder {
 			ordinal -= decrypter.nextInt();
 		}
 
-		Packet.Type type = Packet.Type.values()[ordinal];
+		if (ordinal < 0 || ordinal >= types.length)
+			throw new ProtocolDecoderException("Invalid packet type: " + ordinal);
 
-		IoBuffer payload = in.getSlice(size).asReadOnlyBuffer();
-		Packet message = new Packet(type, payload, session);
+		// The packet is handled after we return, by which time the session buffer may have been compacted,
+		// so copy the payload into a pooled buffer - this goes back to the pool once the packet is released
+		Packet message = Packet.copyOf(types[ordinal], in, size, session);
 
 		// Output the decoded packet
 		out.write(message);
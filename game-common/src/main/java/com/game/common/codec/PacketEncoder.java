@@ -11,11 +11,32 @@ public class PacketEncoder implements ProtocolEncoder {
 
 	@Override
 	public void encode(IoSession session, Object o, ProtocolEncoderOutput out) throws Exception {
-		PacketBuilder message = (PacketBuilder) o;
+		IoBuffer buffer;
 
-		// Allocate a buffer of the exact size for the packet
-		IoBuffer buffer = IoBuffer.allocate(Packet.HEADER_SIZE + message.size(), false);
+		// A batch of packets are all written into one buffer, so they are sent together
+		if (o instanceof PacketBatch) {
+			PacketBatch batch = (PacketBatch) o;
 
+			// Allocate a buffer of the exact size for the whole batch
+			buffer = IoBuffer.allocate(batch.length(), false);
+
+			for (PacketBuilder message : batch)
+				this.encode(session, message, buffer);
+		}
+		else {
+			PacketBuilder message = (PacketBuilder) o;
+
+			// Allocate a buffer of the exact size for the packet
+			buffer = IoBuffer.allocate(Packet.HEADER_SIZE + message.size(), false);
+
+			this.encode(session, message, buffer);
+		}
+
+		// Flip then output
+		out.write(buffer.flip());
+	}
+
+	private void encode(IoSession session, PacketBuilder message, IoBuffer buffer) {
 		// Write the packet header
 		int ordinal = message.getType().ordinal();
 
@@ -29,11 +50,9 @@ public class PacketEncoder implements ProtocolEncoder {
 		buffer.putInt(ordinal);
 		buffer.putInt(message.size());
 
-		// Write the packet payload
-		buffer.put(message.getPayload());
-
-		// Flip then output
-		out.write(buffer.flip());
+		// Write the packet payload, then give the builder's buffer back to the pool
+		message.writeTo(buffer);
+		message.release();
 	}
 
 	@Override
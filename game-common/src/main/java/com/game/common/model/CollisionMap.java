@@ -0,0 +1,149 @@
+package com.game.common.model;
+
+// Which tiles in an area can be walked on and where the walls are, packed into a byte per tile
+// so steps can be checked without looking up any tiles
+public class CollisionMap {
+
+	public static final int PRESENT = 1;	// there is a tile here at all
+	public static final int WALKABLE = 2;
+	public static final int H_WALL = 4;
+	public static final int V_WALL = 8;
+
+	protected static final int OPEN = PRESENT | WALKABLE;
+
+	// Takes a snapshot of the tiles in the given area, any tiles the map doesn't have are left empty
+	public static CollisionMap build(Map map, int x, int y, int width, int height) {
+		CollisionMap collision = new CollisionMap(x, y, width, height);
+
+		for (int ty = 0;ty < height;ty++) {
+			for (int tx = 0;tx < width;tx++)
+				collision.set(x + tx, y + ty, map.getTile(x + tx, y + ty));
+		}
+
+		return collision;
+	}
+
+	protected final int offsetX;
+	protected final int offsetY;
+	protected final int width;
+	protected final int height;
+	protected final byte[] flags;
+
+	public CollisionMap(int offsetX, int offsetY, int width, int height) {
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+		this.width = width;
+		this.height = height;
+
+		flags = new byte[width * height];
+	}
+
+	public void set(int x, int y, Tile tile) {
+		x -= offsetX;
+		y -= offsetY;
+
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			return;
+
+		int value = 0;
+		if (tile != null) {
+			value |= PRESENT;
+
+			if (tile.isWalkable())
+				value |= WALKABLE;
+
+			if (tile.hasHWall())
+				value |= H_WALL;
+
+			if (tile.hasVWall())
+				value |= V_WALL;
+		}
+
+		flags[y * width + x] = (byte) value;
+	}
+
+	// Anywhere outside the area counts as having no tile
+	public int get(int x, int y) {
+		x -= offsetX;
+		y -= offsetY;
+
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			return 0;
+
+		return flags[y * width + x];
+	}
+
+	public boolean isWalkable(int x, int y) {
+		return (this.get(x, y) & OPEN) == OPEN;
+	}
+
+	// The same as Tile.isBlockedHorizontally(), but a missing tile counts as blocked too
+	protected boolean isBlockedHorizontally(int x, int y) {
+		return (this.get(x, y) & (OPEN | H_WALL)) != OPEN;
+	}
+
+	protected boolean isBlockedVertically(int x, int y) {
+		return (this.get(x, y) & (OPEN | V_WALL)) != OPEN;
+	}
+
+	// NOTE: This must give the same answers as the tile based check in Map.isValidStep()
+	public boolean isValidStep(int fromX, int fromY, int toX, int toY) {
+		// If the step is more than 1 tile away, it isn't valid
+		if (Math.abs(toX - fromX) > 1 || Math.abs(toY - fromY) > 1)
+			return false;
+
+		// If we aren't on the map, or the destination isn't walkable then we can't go there
+		if ((this.get(fromX, fromY) & PRESENT) == 0 || !this.isWalkable(toX, toY))
+			return false;
+
+		// Moving left or right, check our old y
+		if (fromX > toX && this.isBlockedVertically(fromX, fromY))
+			return false;
+		else if (fromX < toX && this.isBlockedVertically(fromX + 1, fromY))
+			return false;
+
+		// Moving down or up, check our old x
+		if (fromY > toY && this.isBlockedHorizontally(fromX, fromY - 1))
+			return false;
+		else if (fromY < toY && this.isBlockedHorizontally(fromX, fromY))
+			return false;
+
+		// We are moving straight, and aren't blocked
+		if (fromX == toX || fromY == toY)
+			return true;
+
+		// We are moving diagonal, so we also need to check the destination tile isn't blocked
+		if (fromX > toX && this.isBlockedVertically(toX + 1, toY))
+			return false;
+		else if (fromX < toX && this.isBlockedVertically(toX, toY))
+			return false;
+
+		if (fromY > toY && this.isBlockedHorizontally(toX, toY))
+			return false;
+		else if (fromY < toY && this.isBlockedHorizontally(toX, toY - 1))
+			return false;
+
+		return true;
+	}
+
+	public int getOffsetX() {
+		return offsetX;
+	}
+
+	public int getOffsetY() {
+		return offsetY;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public String toString() {
+		return "collision[offset = (" + offsetX + ", " + offsetY + "), width = " + width + ", height = " + height + "]";
+	}
+}
@@ -1,11 +1,11 @@
 package com.game.common.model;
 
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Formatter;
 
+import org.apache.mina.core.buffer.IoBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,17 +16,23 @@ public class Hash implements Comparable<Hash>, Serializable {
 	public static final int LENGTH = 20; // in bytes
 	public static final String ALGORITHM = "SHA-1";
 
-	protected static MessageDigest digest;
-
-	static {
-		try {
-			digest = MessageDigest.getInstance(ALGORITHM);
-		}
-		catch (NoSuchAlgorithmException e) {
-			log.error("No such hashing algorithm: " + ALGORITHM);
-			System.exit(1); // fatal error
+	protected static final Charset charset = Charset.forName("UTF-8");
+	protected static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	// MessageDigest isn't thread safe, so each thread gets its own
+	protected static final ThreadLocal<MessageDigest> digest = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance(ALGORITHM);
+			}
+			catch (NoSuchAlgorithmException e) {
+				log.error("No such hashing algorithm: " + ALGORITHM);
+				System.exit(1); // fatal error
+				return null;
+			}
 		}
-	}
+	};
 
 	public static Hash fromString(String hex) {
 		Hash hash = new Hash();
@@ -42,51 +48,86 @@ public class Hash implements Comparable<Hash>, Serializable {
 		return hash;
 	}
 
-	protected String hex;
+	public static Hash readFrom(IoBuffer buffer) {
+		Hash hash = new Hash();
 
-	public Hash(String str) {
-		try {
-			digest.update(str.getBytes("UTF-8"));
-		}
-		catch (UnsupportedEncodingException e) { }
+		hash.high = buffer.getLong();
+		hash.middle = buffer.getLong();
+		hash.low = buffer.getInt();
 
-		this.setBytes(digest.digest());
+		return hash;
+	}
+
+	// The 20 bytes of the hash, packed big-endian
+	protected long high;	// bytes 0-7
+	protected long middle;	// bytes 8-15
+	protected int low;		// bytes 16-19
+
+	public Hash(String str) {
+		this.setBytes(digest.get().digest(str.getBytes(charset)));
 	}
 
 	private Hash() {
-		hex = null;
+		high = 0;
+		middle = 0;
+		low = 0;
+	}
+
+	// for hibernate, which stores the hex string
+	private String getHex() {
+		return this.toString();
 	}
 
 	private void setHex(String hex) {
-		this.hex = hex;
+		high = Long.parseLong(hex.substring(0, 8), 16) << 32 | Long.parseLong(hex.substring(8, 16), 16);
+		middle = Long.parseLong(hex.substring(16, 24), 16) << 32 | Long.parseLong(hex.substring(24, 32), 16);
+		low = (int) Long.parseLong(hex.substring(32, 40), 16);
 	}
 
 	private void setBytes(byte[] bytes) {
-		Formatter foramtter = new Formatter();
+		IoBuffer buffer = IoBuffer.wrap(bytes);
 
-		for (byte b : bytes)
-			foramtter.format("%02x", b);
-
-		this.hex = foramtter.toString();
+		high = buffer.getLong();
+		middle = buffer.getLong();
+		low = buffer.getInt();
 	}
 
 	public byte[] getBytes() {
 		byte[] bytes = new byte[LENGTH];
-
-		for (int i = 0;i < LENGTH;i++)
-			bytes[i] = (byte) Short.parseShort(hex.substring(2 * i, 2 * (i + 1)), 16);
+		this.writeTo(IoBuffer.wrap(bytes));
 
 		return bytes;
 	}
 
+	public void writeTo(IoBuffer buffer) {
+		buffer.putLong(high);
+		buffer.putLong(middle);
+		buffer.putInt(low);
+	}
+
 	@Override
 	public String toString() {
-		return hex;
+		char[] hex = new char[LENGTH * 2];
+
+		Hash.toHex(high, hex, 0, 16);
+		Hash.toHex(middle, hex, 16, 16);
+		Hash.toHex(low, hex, 32, 8);
+
+		return new String(hex);
+	}
+
+	// Write the lowest digits of value in to hex, most significant first
+	private static void toHex(long value, char[] hex, int offset, int digits) {
+		for (int i = offset + digits - 1;i >= offset;i--) {
+			hex[i] = hexDigits[(int) (value & 0xf)];
+			value >>>= 4;
+		}
 	}
 
 	@Override
 	public int hashCode() {
-		return hex.hashCode();
+		// The hash is already well distributed, so any 32 bits of it will do
+		return (int) high;
 	}
 
 	@Override
@@ -95,11 +136,21 @@ public class Hash implements Comparable<Hash>, Serializable {
 			return false;
 
 		Hash h = (Hash) o;
-		return hex.equals(h.hex);
+		return high == h.high && middle == h.middle && low == h.low;
 	}
 
 	@Override
 	public int compareTo(Hash h) {
-		return hex.compareTo(h.hex);
+		// Compare as unsigned values, so we sort the same as the hex strings
+		if (high != h.high)
+			return (high + Long.MIN_VALUE) < (h.high + Long.MIN_VALUE) ? -1 : 1;
+
+		if (middle != h.middle)
+			return (middle + Long.MIN_VALUE) < (h.middle + Long.MIN_VALUE) ? -1 : 1;
+
+		if (low != h.low)
+			return (low + Integer.MIN_VALUE) < (h.low + Integer.MIN_VALUE) ? -1 : 1;
+
+		return 0;
 	}
 }
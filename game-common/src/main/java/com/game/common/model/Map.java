@@ -3,16 +3,21 @@ package com.game.common.model;
 import com.game.common.util.PathFinder;
 
 public abstract class Map {
-	public static final int MAGIC_NUMBER = 0x4531;
+	public static final int MAGIC_NUMBER = 0x4531; // the old single gzip stream format, only the converter reads it now, see MapFile
 
 	protected final int width;
 	protected final int height;
 	protected final int sectorSize;
 
+	// When set, steps are checked against this instead of the tiles
+	protected CollisionMap collision;
+
 	protected Map(int width, int height, int sectorSize) {
 		this.width = width;
 		this.height = height;
 		this.sectorSize = sectorSize;
+
+		collision = null;
 	}
 
 	public int getSectorSize() {
@@ -38,74 +43,85 @@ public abstract class Map {
 	}
 
 	public boolean isValidStep(Point from, Point to) {
+		return this.isValidStep(from.x, from.y, to.x, to.y);
+	}
+
+	public CollisionMap getCollisionMap() {
+		return collision;
+	}
+
+	public boolean isValidStep(int fromX, int fromY, int toX, int toY) {
+		if (collision != null)
+			return collision.isValidStep(fromX, fromY, toX, toY);
+
 		// If the step is more than 1 tile away, it isn't valid
-		if (from.distanceTo(to) >= 2)
+		if (Math.abs(toX - fromX) > 1 || Math.abs(toY - fromY) > 1)
 			return false;
 
-		Tile fromTile = this.getTile(from);
+		Tile fromTile = this.getTile(fromX, fromY);
 		// This shouldn't happen!
 		if (fromTile == null)
 			return false;
 
-		Tile toTile = this.getTile(to);
+		Tile toTile = this.getTile(toX, toY);
 		// If it isn't found in the map, or isn't walkable then skip it
 		if (toTile == null || !toTile.isWalkable())
 			return false;
 
 		// Moving left, check our old y
-		if (from.x > to.x) {
-			Tile toCheck = this.getTile(from.x, from.y);
+		if (fromX > toX) {
+			Tile toCheck = this.getTile(fromX, fromY);
 			if (toCheck == null || toCheck.isBlockedVertically())
 				return false;
 		}
 		// Moving right, check our old y
-		else if (from.x < to.x) {
-			Tile toCheck = this.getTile(from.x + 1, from.y);
+		else if (fromX < toX) {
+			Tile toCheck = this.getTile(fromX + 1, fromY);
 			if (toCheck == null || toCheck.isBlockedVertically())
 				return false;
 		}
 
 		// Moving down, check our old x
-		if (from.y > to.y){
-			Tile toCheck = this.getTile(from.x, from.y - 1);
+		if (fromY > toY){
+			Tile toCheck = this.getTile(fromX, fromY - 1);
 			if (toCheck == null || toCheck.isBlockedHorizontally())
 				return false;
 		}
 		// Moving up, check our old x
-		else if (from.y < to.y) {
-			Tile toCheck = this.getTile(from.x, from.y);
+		else if (fromY < toY) {
+			Tile toCheck = this.getTile(fromX, fromY);
 			if (toCheck == null || toCheck.isBlockedHorizontally())
 				return false;
 		}
 
 		// We are moving straight, and aren't blocked
-		if ((from.x == to.x) || (from.y == to.y))
+		if ((fromX == toX) || (fromY == toY))
 			return true;
 
 		// We are moving diagonal, so we also need to check the destination tile isn't blocked
 
 		// Moving left, check our new y
-		if (from.x > to.x) {
-			Tile toCheck = this.getTile(to.x + 1, to.y);
+		if (fromX > toX) {
+			Tile toCheck = this.getTile(toX + 1, toY);
 			if (toCheck == null || toCheck.isBlockedVertically())
 				return false;
 		}
 		// Moving right, check our new y
-		else if (from.x < to.x) {
-			Tile toCheck = this.getTile(to.x, to.y);
+		else if (fromX < toX) {
+			Tile toCheck = this.getTile(toX, toY);
 			if (toCheck == null || toCheck.isBlockedVertically())
 				return false;
 		}
 
 		// Moving down, check our new x
-		if (from.y > to.y) {
-			Tile toCheck = this.getTile(to.x, to.y);
+		if (fromY > toY) {
+			Tile toCheck = this.getTile(toX, toY);
 			if (toCheck == null || toCheck.isBlockedHorizontally())
 				return false;
 		}
 		// Moving up, check our new x
-		else if (from.y < to.y) {
-			Tile toCheck = this.getTile(to.x, to.y - 1);
+		else if (fromY < toY) {
+			Tile toCheck = this.getTile(toX, toY - 1);
 			if (toCheck == null || toCheck.isBlockedHorizontally())
 				return false;
 		}
@@ -0,0 +1,244 @@
+package com.game.common.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// A map file with an index of where each sector is, so any sector can be read without touching the rest
+//
+// Layout (big-endian):
+//   int magic, int flags, int width (sectors), int height (sectors), int sectorSize
+//   for each sector (row by row): int offset (from the start of the file), int length
+//   the sector blocks, each is sectorSize * sectorSize tiles of Tile.DATA_LENGTH bytes, deflated if FLAG_COMPRESSED is set
+//
+// Identical sectors share a block, so the empty parts of the map cost next to nothing even when uncompressed.
+public class MapFile {
+	private static final Logger log = LoggerFactory.getLogger(MapFile.class);
+
+	public static final int MAGIC_NUMBER = 0x4532;
+	public static final int FLAG_COMPRESSED = 1;
+
+	protected static final int HEADER_LENGTH = 5 * 4;
+	protected static final int INDEX_ENTRY_LENGTH = 2 * 4;
+
+	public static MapFile open(URL path) throws IOException {
+		// If it's a plain file we can map it, otherwise (e.g. inside a jar) it has to be read into memory
+		if ("file".equals(path.getProtocol())) {
+			try {
+				return MapFile.open(new File(path.toURI()));
+			}
+			catch (URISyntaxException e) {
+				log.warn("Unable to map " + path + ", reading it instead: " + e.getMessage());
+			}
+		}
+
+		InputStream in = path.openStream();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			byte[] buffer = new byte[8192];
+			for (int read;(read = in.read(buffer)) != -1;)
+				out.write(buffer, 0, read);
+
+			return new MapFile(ByteBuffer.wrap(out.toByteArray()));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	public static MapFile open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// The mapping stays valid after the channel is closed
+			FileChannel channel = raf.getChannel();
+			return new MapFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	// Sectors are given row by row, each one as sectorSize * sectorSize tiles of Tile.DATA_LENGTH bytes
+	public static void write(File file, int width, int height, int sectorSize, byte[][] sectors, boolean compressed) throws IOException {
+		if (sectors.length != width * height)
+			throw new IllegalArgumentException("Expected " + (width * height) + " sectors, got " + sectors.length);
+
+		int sectorLength = sectorSize * sectorSize * Tile.DATA_LENGTH;
+
+		// Work out the blocks first, so the index can be written before them
+		Map<ByteBuffer, Integer> offsets = new HashMap<ByteBuffer, Integer>();
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		int[] offset = new int[sectors.length];
+		int[] length = new int[sectors.length];
+
+		int start = HEADER_LENGTH + (sectors.length * INDEX_ENTRY_LENGTH);
+		for (int i = 0;i < sectors.length;i++) {
+			if (sectors[i].length != sectorLength)
+				throw new IllegalArgumentException("Sector " + i + " is " + sectors[i].length + " bytes, expected " + sectorLength);
+
+			byte[] block = compressed ? MapFile.deflate(sectors[i]) : sectors[i];
+
+			Integer existing = offsets.get(ByteBuffer.wrap(block));
+			if (existing == null) {
+				existing = start + blocks.size();
+				offsets.put(ByteBuffer.wrap(block), existing);
+				blocks.write(block);
+			}
+
+			offset[i] = existing;
+			length[i] = block.length;
+		}
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(MAGIC_NUMBER);
+			out.writeInt(compressed ? FLAG_COMPRESSED : 0);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(sectorSize);
+
+			for (int i = 0;i < sectors.length;i++) {
+				out.writeInt(offset[i]);
+				out.writeInt(length[i]);
+			}
+
+			blocks.writeTo(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	protected static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(data);
+		deflater.finish();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished())
+			out.write(buffer, 0, deflater.deflate(buffer));
+
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	protected final ByteBuffer buffer;
+	protected final int flags;
+	protected final int width;
+	protected final int height;
+	protected final int sectorSize;
+
+	protected MapFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC_NUMBER)
+			throw new IOException("Attempted to read invalid map file");
+
+		flags = buffer.getInt(4);
+		width = buffer.getInt(8);
+		height = buffer.getInt(12);
+		sectorSize = buffer.getInt(16);
+
+		if (buffer.capacity() < HEADER_LENGTH + (width * height * INDEX_ENTRY_LENGTH))
+			throw new IOException("Map file is truncated");
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getSectorSize() {
+		return sectorSize;
+	}
+
+	public boolean isCompressed() {
+		return (flags & FLAG_COMPRESSED) != 0;
+	}
+
+	public int getSectorLength() {
+		return sectorSize * sectorSize * Tile.DATA_LENGTH;
+	}
+
+	public boolean hasSector(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	// Reads the tiles of the given sector (in sector coordinates) into data, which must hold getSectorLength() bytes
+	// NOTE: This is safe to call from several threads at once
+	public void readSector(int x, int y, byte[] data) throws IOException {
+		if (!this.hasSector(x, y))
+			throw new IOException("Sector (" + x + ", " + y + ") is outside the map");
+
+		int entry = HEADER_LENGTH + ((y * width) + x) * INDEX_ENTRY_LENGTH;
+		int offset = buffer.getInt(entry);
+		int length = buffer.getInt(entry + 4);
+
+		if (offset < 0 || length < 0 || offset + length > buffer.capacity())
+			throw new IOException("Sector (" + x + ", " + y + ") is corrupt");
+
+		// Each read works on its own view, so the shared buffer's position is never touched
+		ByteBuffer block = buffer.duplicate();
+		block.position(offset);
+
+		if (!this.isCompressed()) {
+			if (length != data.length)
+				throw new IOException("Sector (" + x + ", " + y + ") is " + length + " bytes, expected " + data.length);
+
+			block.get(data);
+			return;
+		}
+
+		byte[] compressed = new byte[length];
+		block.get(compressed);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			if (inflater.inflate(data) != data.length || !inflater.finished())
+				throw new IOException("Sector (" + x + ", " + y + ") has the wrong length");
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Sector (" + x + ", " + y + ") is corrupt: " + e.getMessage());
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	// The tiles of the given sector as a stream, for anything which builds tiles with Tile(DataInputStream)
+	public DataInputStream openSector(int x, int y) throws IOException {
+		byte[] data = new byte[this.getSectorLength()];
+		this.readSector(x, y, data);
+
+		return new DataInputStream(new ByteArrayInputStream(data));
+	}
+
+	@Override
+	public String toString() {
+		return "mapfile[width = " + width + ", height = " + height + ", sectorSize = " + sectorSize + ", compressed = " + this.isCompressed() + "]";
+	}
+}
@@ -11,7 +11,6 @@ public class PlayerProfile implements Serializable {
 
 	public Hash id;
 
-	@SuppressWarnings("unused")
 	private Hash password; // for hibernate
 
 	public String username;
@@ -24,6 +23,25 @@ public class PlayerProfile implements Serializable {
 	public Date registered;
 	public Date lastSession;
 
+	// Set when something has changed since the profile was last saved
+	protected transient volatile boolean dirty;
+
+	public void setPassword(Hash password) {
+		this.password = password;
+	}
+
+	public boolean hasPassword(Hash password) {
+		return this.password != null && this.password.equals(password);
+	}
+
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
 	@Override
 	public int hashCode() {
 		return id.hashCode();
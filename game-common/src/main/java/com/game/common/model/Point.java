@@ -7,6 +7,11 @@ public class Point implements Serializable {
 
 	public static final Point ZERO = new Point(0, 0);
 
+	// Offsets for each of the 8 directions, clockwise from north
+	public static final int DIRECTIONS = 8;
+	protected static final int[] DX = { 0, 1, 1, 1, 0, -1, -1, -1 };
+	protected static final int[] DY = { -1, -1, 0, 1, 1, 1, 0, -1 };
+
 	public int x;
 	public int y;
 
@@ -28,6 +33,23 @@ public class Point implements Serializable {
 		return Math.sqrt(Math.pow(this.x - p.x, 2) + Math.pow(this.y - p.y, 2));
 	}
 
+	// Returns the direction of an adjacent point, or -1 if it isn't adjacent
+	public int directionTo(Point p) {
+		int dx = p.x - x;
+		int dy = p.y - y;
+
+		for (int i = 0;i < DIRECTIONS;i++) {
+			if (DX[i] == dx && DY[i] == dy)
+				return i;
+		}
+
+		return -1;
+	}
+
+	public Point step(int direction) {
+		return new Point(x + DX[direction], y + DY[direction]);
+	}
+
 	@Override
 	public int hashCode() {
 		return x << 16 | y;
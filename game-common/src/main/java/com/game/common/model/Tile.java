@@ -77,12 +77,16 @@ public abstract class Tile {
 	}
 
 	protected Tile() {
-		elevation = 0;
-		texture = 0;
-		overlay = 0;
+		this ((byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+	}
+
+	protected Tile(byte elevation, byte texture, byte overlay, byte hWall, byte vWall) {
+		this.elevation = elevation;
+		this.texture = texture;
+		this.overlay = overlay;
 
-		hWall = 0;
-		vWall = 0;
+		this.hWall = hWall;
+		this.vWall = vWall;
 
 		definition = definitions.get(texture);
 		if (definition == null)
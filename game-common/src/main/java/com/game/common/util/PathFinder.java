@@ -1,7 +1,6 @@
 package com.game.common.util;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 import com.game.common.model.Map;
 import com.game.common.model.Path;
@@ -10,65 +9,162 @@ import com.game.common.model.Tile;
 
 // Path finder using the A* algorithm
 // See: http://www.cokeandcode.com/pathfinding
+// Nodes are indexes into a square grid centred on the start, with the open list kept in a binary heap
 public class PathFinder {
 
-	protected static class Node implements Comparable<Node> {
-		public final Point location;
-		public double cost;
-		public double heuristic;
-		public Node parent;
-		public boolean checked;
+	protected static final double DIAGONAL_COST = Math.sqrt(2);
+	protected static final int CLOSED = -1;
+
+	// The working state of a search, kept between searches so each one doesn't allocate a whole grid
+	protected static class Scratch {
+		protected int[] visited;		// which search last touched each node, anything else is untouched
+		protected double[] cost;		// cost of the best path found from the start
+		protected double[] estimate;	// cost plus the heuristic to the target
+		protected int[] parent;
+		protected int[] heapIndex;		// position in the open heap, or CLOSED
+		protected int[] heap;
+		protected int heapSize;
+		protected int search;
+
+		protected Scratch() {
+			this.ensureCapacity(0);
+		}
 
-		public Node(Point location) {
-			this.location = location;
+		protected void ensureCapacity(int nodes) {
+			if (visited != null && visited.length >= nodes)
+				return;
 
-			cost = 0.0;
-			heuristic = 0.0;
+			visited = new int[nodes];
+			cost = new double[nodes];
+			estimate = new double[nodes];
+			parent = new int[nodes];
+			heapIndex = new int[nodes];
+			heap = new int[nodes];
 
-			parent = null;
-			checked = false;
+			search = 0;
 		}
 
-		@Override
-		public int compareTo(Node n) {
-			double totalCost = this.cost + this.heuristic;
-			double theirTotalCost = n.cost + n.heuristic;
+		protected void begin(int nodes) {
+			this.ensureCapacity(nodes);
 
-			if (totalCost > theirTotalCost)
-				return 1;
-			else if (totalCost < theirTotalCost)
-				return -1;
+			heapSize = 0;
 
-			return 0;
+			// Everything is untouched again without clearing any arrays, unless we run out of numbers
+			if (++search == Integer.MAX_VALUE) {
+				Arrays.fill(visited, 0);
+				search = 1;
+			}
 		}
 
-		@Override
-		public int hashCode() {
-			return location.hashCode();
+		protected boolean isVisited(int node) {
+			return visited[node] == search;
 		}
 
-		@Override
-		public boolean equals(Object o) {
-			if (!(o instanceof Node))
-				return false;
+		protected boolean isOpen(int node) {
+			return visited[node] == search && heapIndex[node] != CLOSED;
+		}
+
+		protected void open(int node, double cost, double estimate, int parent) {
+			visited[node] = search;
+
+			this.cost[node] = cost;
+			this.estimate[node] = estimate;
+			this.parent[node] = parent;
 
-			Node n = (Node) o;
-			return location.equals(n.location);
+			heap[heapSize] = node;
+			heapIndex[node] = heapSize;
+			heapSize++;
+
+			this.siftUp(heapIndex[node]);
 		}
 
-		@Override
-		public String toString() {
-			return "node[location = " + location + ", cost = " + cost + ", heuristic = " + heuristic + ", parent = " + parent + ", checked = " + checked + "]";
+		// Found a cheaper way to an open node
+		protected void decrease(int node, double cost, double estimate, int parent) {
+			this.cost[node] = cost;
+			this.estimate[node] = estimate;
+			this.parent[node] = parent;
+
+			this.siftUp(heapIndex[node]);
+		}
+
+		// Takes the open node with the lowest estimate, and closes it
+		protected int poll() {
+			int node = heap[0];
+			heapIndex[node] = CLOSED;
+
+			heapSize--;
+			if (heapSize > 0) {
+				heap[0] = heap[heapSize];
+				heapIndex[heap[0]] = 0;
+
+				this.siftDown(0);
+			}
+
+			return node;
+		}
+
+		// On equal estimates prefer the node furthest along, it's probably closer to the target
+		private boolean before(int a, int b) {
+			if (estimate[a] != estimate[b])
+				return estimate[a] < estimate[b];
+
+			return cost[a] > cost[b];
+		}
+
+		private void siftUp(int index) {
+			int node = heap[index];
+
+			while (index > 0) {
+				int parentIndex = (index - 1) >> 1;
+				int parentNode = heap[parentIndex];
+				if (!this.before(node, parentNode))
+					break;
+
+				heap[index] = parentNode;
+				heapIndex[parentNode] = index;
+				index = parentIndex;
+			}
+
+			heap[index] = node;
+			heapIndex[node] = index;
+		}
+
+		private void siftDown(int index) {
+			int node = heap[index];
+
+			while (true) {
+				int child = (index << 1) + 1;
+				if (child >= heapSize)
+					break;
+
+				// Pick the better of the two children
+				if (child + 1 < heapSize && this.before(heap[child + 1], heap[child]))
+					child++;
+
+				if (!this.before(heap[child], node))
+					break;
+
+				heap[index] = heap[child];
+				heapIndex[heap[index]] = index;
+				index = child;
+			}
+
+			heap[index] = node;
+			heapIndex[node] = index;
 		}
 	}
 
+	protected static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
 	protected final Map map;
 	protected final Point start;
 	protected final int maxRadius;
 
-	protected final LinkedList<Node> pending;
-	protected Node[][] nodes;
-
 	public PathFinder(Map map, Point start) {
 		this (map, start, map.getSectorSize());
 	}
@@ -77,22 +173,14 @@ public class PathFinder {
 		this.map = map;
 		this.start = start;
 		this.maxRadius = maxRadius;
-
-		pending = new LinkedList<Node>();
-		nodes = null; // initialized in generatePath()
 	}
 
-	protected Node getNode(Point location) {
-		int x = (location.x - start.x) + maxRadius;
-		int y = (location.y - start.y) + maxRadius;
+	// Octile distance, the exact cost of walking there if nothing was in the way
+	protected static double heuristic(int x, int y, int targetX, int targetY) {
+		int dx = Math.abs(targetX - x);
+		int dy = Math.abs(targetY - y);
 
-		if (x < 0 || x >= nodes.length || y < 0 || y >= nodes[x].length)
-			return null;
-
-		if (nodes[x][y] == null)
-			nodes[x][y] = new Node(location);
-
-		return nodes[x][y];
+		return (dx + dy) + (DIAGONAL_COST - 2) * Math.min(dx, dy);
 	}
 
 	public Path generatePath(Point target) {
@@ -100,97 +188,97 @@ public class PathFinder {
 	}
 
 	public Path generatePath(Point target, int close) {
-		try {
-			Tile tile = map.getTile(target);
-			// If there isn't such a tile, or it isn't walkable and we need to go to it then no path can exist
-			if (tile == null || (!tile.isWalkable() && close == 0))
-				return null;
-
-			nodes = new Node[maxRadius * 2][maxRadius * 2];
-
-			// The target is above map.getSectorSize() tiles away, so we can't find a valid path
-			if (this.getNode(target) == null)
-				return null;
-
-			// Set our starting position and add it to the open list
-			Node startNode = this.getNode(start);
-			startNode.cost = 0;
-			startNode.heuristic = Double.MAX_VALUE;
-
-			pending.add(startNode);
-
-			// while there are still tiles to be checked
-			while (!pending.isEmpty()) {
-				Collections.sort(pending);
-				Node current = pending.poll(); // Get the first pending node (which heuristics say is closest to the target)
-				// if it is actually the target, or close enough, then we're done
-				if (current.location.equals(target) || current.location.distanceTo(target) <= close)
-					break;
+		Tile tile = map.getTile(target);
+		// If there isn't such a tile, or it isn't walkable and we need to go to it then no path can exist
+		if (tile == null || (!tile.isWalkable() && close == 0))
+			return null;
 
-				// Remove from open and add to set this node as checked
-				current.checked = true;
+		// The grid covers maxRadius tiles either side of the start
+		int size = maxRadius * 2;
+		int originX = start.x - maxRadius;
+		int originY = start.y - maxRadius;
 
-				// for each tile around us
-				for (int y = -1;y < 2;y++) {
-					for (int x = -1;x < 2;x++) {
-						if (x == 0 && y == 0)
-							continue;
+		int targetX = target.x - originX;
+		int targetY = target.y - originY;
 
-						Point point = new Point(current.location.x + x, current.location.y + y);
-						// If it's outside the map, it's an invalid location so skip it
-						if (point.x < 0 || point.x >= map.getWidth() || point.y < 0 || point.y >= map.getHeight())
-							continue;
+		// The target is above maxRadius tiles away, so we can't find a valid path
+		if (targetX < 0 || targetX >= size || targetY < 0 || targetY >= size)
+			return null;
 
-						// If it isn't a valid step then skip it
-						if (!map.isValidStep(current.location, point))
-							continue;
+		Scratch s = scratch.get();
+		s.begin(size * size);
 
-						// If it isn't found then it's greater than a sector away, so the path would be too long
-						Node next = this.getNode(point);
-						if (next == null)
-							continue;
+		// Set our starting position and add it to the open list
+		int startNode = maxRadius * size + maxRadius;
+		s.open(startNode, 0, heuristic(maxRadius, maxRadius, targetX, targetY), -1);
 
-						double cost = current.cost + current.location.distanceTo(point);
+		int reached = -1;
 
-						// If we've already visited, and the new cost is less we need to re-evaluate
-						if (cost < next.cost) {
-							if (pending.contains(next))
-								pending.remove(next);
+		// while there are still tiles to be checked
+		while (s.heapSize > 0) {
+			int current = s.poll(); // Get the node which heuristics say is closest to the target
+			int currentX = current % size;
+			int currentY = current / size;
 
-							if (next.checked)
-								next.checked = false;
-						}
+			// if it is actually the target, or close enough, then we're done
+			int dx = targetX - currentX;
+			int dy = targetY - currentY;
+			if (dx * dx + dy * dy <= close * close) {
+				reached = current;
+				break;
+			}
 
-						// If this tile is new or not in either list then we should set its attributes
-						if (!pending.contains(next) && !next.checked) {
-							next.cost = cost;
-							next.heuristic = target.distanceTo(point);
+			// for each tile around us
+			for (int y = -1;y < 2;y++) {
+				for (int x = -1;x < 2;x++) {
+					if (x == 0 && y == 0)
+						continue;
 
-							next.parent = current;
+					int nextX = currentX + x;
+					int nextY = currentY + y;
 
-							pending.add(next);
-						}
-					}
-				}
-			}
+					// If it's outside the grid then it's too far away, so the path would be too long
+					if (nextX < 0 || nextX >= size || nextY < 0 || nextY >= size)
+						continue;
 
-			Node destination = this.getNode(target);
+					int mapX = originX + nextX;
+					int mapY = originY + nextY;
 
-			// The destination wasn't reached
-			if (destination == null || destination.parent == null)
-				return null;
+					// If it's outside the map, it's an invalid location so skip it
+					if (mapX < 0 || mapX >= map.getWidth() || mapY < 0 || mapY >= map.getHeight())
+						continue;
 
-			// We have found a path
-			Path path = new Path();
+					int next = nextY * size + nextX;
 
-			for (Node n = destination;n != null && !n.location.equals(start);n = n.parent)
-				path.prepend(n.location);
+					// The heuristic never overestimates, so once a node is closed there's no cheaper way to it
+					if (s.isVisited(next) && !s.isOpen(next))
+						continue;
 
-			return path;
-		}
-		finally {
-			pending.clear();
-			nodes = null;
+					// If it isn't a valid step then skip it
+					if (!map.isValidStep(originX + currentX, originY + currentY, mapX, mapY))
+						continue;
+
+					double cost = s.cost[current] + ((x != 0 && y != 0) ? DIAGONAL_COST : 1);
+
+					// If this tile is new then add it, if we've found a cheaper way to it then update it
+					if (!s.isVisited(next))
+						s.open(next, cost, cost + heuristic(nextX, nextY, targetX, targetY), current);
+					else if (cost < s.cost[next])
+						s.decrease(next, cost, cost + heuristic(nextX, nextY, targetX, targetY), current);
+				}
+			}
 		}
+
+		// The destination wasn't reached, or we were already there
+		if (reached == -1 || reached == startNode)
+			return null;
+
+		// We have found a path
+		Path path = new Path();
+
+		for (int n = reached;n != startNode;n = s.parent[n])
+			path.prepend(new Point(originX + (n % size), originY + (n / size)));
+
+		return path;
 	}
 }
@@ -0,0 +1,98 @@
+package com.game.common.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Maps entries to small integer slots, so they can be referred to compactly over the network
+public class SlotTable<T> {
+
+	protected final Object[] entries;
+	protected final Map<T, Integer> slots;
+	protected int nextFree;
+
+	public SlotTable(int capacity) {
+		entries = new Object[capacity];
+		slots = new HashMap<T, Integer>();
+		nextFree = 0;
+	}
+
+	// Allocates the lowest free slot to the entry, returns -1 if the table is full
+	public int add(T entry) {
+		Integer existing = slots.get(entry);
+		if (existing != null)
+			return existing;
+
+		while (nextFree < entries.length && entries[nextFree] != null)
+			nextFree++;
+
+		if (nextFree == entries.length)
+			return -1;
+
+		int slot = nextFree++;
+		this.put(slot, entry);
+
+		return slot;
+	}
+
+	// Places the entry in a specific slot, replacing anything already there
+	public void put(int slot, T entry) {
+		Integer existing = slots.get(entry);
+		if (existing != null)
+			this.remove(existing);
+
+		this.remove(slot);
+
+		entries[slot] = entry;
+		slots.put(entry, slot);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(int slot) {
+		if (slot < 0 || slot >= entries.length)
+			return null;
+
+		return (T) entries[slot];
+	}
+
+	public int indexOf(T entry) {
+		Integer slot = slots.get(entry);
+		if (slot == null)
+			return -1;
+
+		return slot;
+	}
+
+	public T remove(int slot) {
+		T entry = this.get(slot);
+		if (entry == null)
+			return null;
+
+		entries[slot] = null;
+		slots.remove(entry);
+
+		if (slot < nextFree)
+			nextFree = slot;
+
+		return entry;
+	}
+
+	public int size() {
+		return slots.size();
+	}
+
+	public int capacity() {
+		return entries.length;
+	}
+
+	public boolean isFull() {
+		return slots.size() == entries.length;
+	}
+
+	public void clear() {
+		for (int i = 0;i < entries.length;i++)
+			entries[i] = null;
+
+		slots.clear();
+		nextFree = 0;
+	}
+}
@@ -0,0 +1,57 @@
+package com.game.common.util;
+
+public class Statistic {
+
+	protected long count;
+	protected long total;
+	protected long max;
+	protected long last;
+
+	public Statistic() {
+		this.reset();
+	}
+
+	public synchronized void add(long value) {
+		count++;
+		total += value;
+		last = value;
+
+		if (value > max)
+			max = value;
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized double getMean() {
+		if (count == 0)
+			return 0;
+
+		return (double) total / count;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized long getLast() {
+		return last;
+	}
+
+	public synchronized void reset() {
+		count = 0;
+		total = 0;
+		max = 0;
+		last = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "statistic[count = " + count + ", mean = " + this.getMean() + ", max = " + max + ", last = " + last + "]";
+	}
+}
@@ -0,0 +1,103 @@
+package com.game.common.codec;
+
+import java.util.Queue;
+
+import junit.framework.TestCase;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.apache.mina.filter.codec.AbstractProtocolEncoderOutput;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+
+public class PacketEncoderTest extends TestCase {
+
+	private static class EncoderOutput extends AbstractProtocolEncoderOutput {
+		@Override
+		public WriteFuture flush() {
+			return null;
+		}
+	}
+
+	private static class DecoderOutput extends AbstractProtocolDecoderOutput {
+		@Override
+		public void flush(org.apache.mina.core.filterchain.IoFilter.NextFilter nextFilter, IoSession session) { }
+	}
+
+	public void testEncodeBatch() throws Exception {
+		IoSession session = new DummySession();
+
+		PacketBuilder first = new PacketBuilder(Packet.Type.CHAT_RESPONSE);
+		first.putString("hello");
+
+		PacketBuilder second = new PacketBuilder(Packet.Type.MESSAGE_RESPONSE);
+		second.putString("good bye");
+
+		PacketBatch batch = new PacketBatch();
+		batch.add(first);
+		batch.add(second);
+
+		int length = batch.length();
+
+		EncoderOutput encoded = new EncoderOutput();
+		new PacketEncoder().encode(session, batch, encoded);
+
+		// the whole batch should be written as a single buffer
+		Queue<Object> buffers = encoded.getMessageQueue();
+		assertEquals(1, buffers.size());
+
+		IoBuffer buffer = (IoBuffer) buffers.poll();
+		assertEquals(length, buffer.remaining());
+
+		DecoderOutput decoded = new DecoderOutput();
+		new PacketDecoder().decode(session, buffer, decoded);
+
+		// which decodes back into the original packets, in order
+		Queue<Object> packets = decoded.getMessageQueue();
+		assertEquals(2, packets.size());
+
+		Packet packet = (Packet) packets.poll();
+		assertTrue(packet.getType() == Packet.Type.CHAT_RESPONSE);
+		assertEquals("hello", packet.getString());
+
+		packet = (Packet) packets.poll();
+		assertTrue(packet.getType() == Packet.Type.MESSAGE_RESPONSE);
+		assertEquals("good bye", packet.getString());
+	}
+
+	public void testDecodeRejectsOversized() throws Exception {
+		IoBuffer buffer = IoBuffer.allocate(Packet.HEADER_SIZE);
+		buffer.putInt(Packet.Type.CHAT_RESPONSE.ordinal());
+		buffer.putInt(Packet.MAX_SIZE + 1);
+		buffer.flip();
+
+		// the header alone is enough to refuse it, without waiting for a payload which might never end
+		try {
+			new PacketDecoder().decode(new DummySession(), buffer, new DecoderOutput());
+			fail("Expected an oversized packet to be rejected");
+		}
+		catch (ProtocolDecoderException e) { }
+	}
+
+	public void testEncodeRecyclesBuffers() throws Exception {
+		IoSession session = new DummySession();
+
+		PacketBuilder first = new PacketBuilder(Packet.Type.CHAT_RESPONSE);
+		first.putString("hello");
+
+		int pooled = Packet.pool.size();
+		new PacketEncoder().encode(session, first, new EncoderOutput());
+
+		// once encoded the builder should have given its buffer back to the pool
+		assertNull(first.payload);
+		assertEquals(pooled + 1, Packet.pool.size());
+
+		PacketBuilder second = new PacketBuilder(Packet.Type.CHAT_RESPONSE);
+
+		// so the next builder can reuse it, empty
+		assertEquals(pooled, Packet.pool.size());
+		assertEquals(0, second.size());
+	}
+}
@@ -0,0 +1,37 @@
+package com.game.common.model;
+
+import junit.framework.TestCase;
+
+public class CollisionMapTest extends TestCase {
+
+	public void testMatchesTiles() throws Exception {
+		Map map = new TestMap(16, 1234);
+		CollisionMap collision = CollisionMap.build(map, 0, 0, map.getWidth(), map.getHeight());
+
+		// Every step from every tile, including off the edges, should give the same answer as the tiles do
+		for (int x = -1;x <= map.getWidth();x++) {
+			for (int y = -1;y <= map.getHeight();y++) {
+				for (int dx = -2;dx <= 2;dx++) {
+					for (int dy = -2;dy <= 2;dy++)
+						assertEquals("Step from (" + x + ", " + y + ") by (" + dx + ", " + dy + ")", map.isValidStep(x, y, x + dx, y + dy), collision.isValidStep(x, y, x + dx, y + dy));
+				}
+			}
+		}
+	}
+
+	public void testPartialArea() throws Exception {
+		Map map = new TestMap(16, 5678);
+		CollisionMap collision = CollisionMap.build(map, 4, 4, 8, 8);
+
+		// Inside the area the flags match the tiles
+		for (int x = 4;x < 12;x++) {
+			for (int y = 4;y < 12;y++)
+				assertEquals(map.getTile(x, y).isWalkable(), collision.isWalkable(x, y));
+		}
+
+		// Outside it there's nothing to walk on
+		assertEquals(0, collision.get(3, 4));
+		assertEquals(0, collision.get(12, 4));
+		assertFalse(collision.isValidStep(4, 4, 3, 4));
+	}
+}
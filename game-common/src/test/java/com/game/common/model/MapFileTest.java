@@ -0,0 +1,77 @@
+package com.game.common.model;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MapFileTest extends TestCase {
+
+	private static final int WIDTH = 3;
+	private static final int HEIGHT = 2;
+	private static final int SECTOR_SIZE = 8;
+
+	// Random sectors, apart from the first two which are empty
+	private static byte[][] createSectors(long seed) {
+		Random random = new Random(seed);
+
+		byte[][] sectors = new byte[WIDTH * HEIGHT][SECTOR_SIZE * SECTOR_SIZE * Tile.DATA_LENGTH];
+		for (int i = 2;i < sectors.length;i++)
+			random.nextBytes(sectors[i]);
+
+		return sectors;
+	}
+
+	private static void assertRoundTrip(boolean compressed) throws Exception {
+		byte[][] sectors = MapFileTest.createSectors(1234);
+
+		File file = File.createTempFile("mapfile", ".map");
+		try {
+			MapFile.write(file, WIDTH, HEIGHT, SECTOR_SIZE, sectors, compressed);
+
+			MapFile map = MapFile.open(file);
+			assertEquals(WIDTH, map.getWidth());
+			assertEquals(HEIGHT, map.getHeight());
+			assertEquals(SECTOR_SIZE, map.getSectorSize());
+			assertEquals(compressed, map.isCompressed());
+
+			// Read them backwards, each one should be found on its own
+			byte[] data = new byte[map.getSectorLength()];
+			for (int y = HEIGHT - 1;y >= 0;y--) {
+				for (int x = WIDTH - 1;x >= 0;x--) {
+					map.readSector(x, y, data);
+					assertTrue("Sector (" + x + ", " + y + ")", Arrays.equals(sectors[(y * WIDTH) + x], data));
+				}
+			}
+
+			assertFalse(map.hasSector(WIDTH, 0));
+			assertFalse(map.hasSector(0, -1));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public void testRoundTrip() throws Exception {
+		MapFileTest.assertRoundTrip(false);
+	}
+
+	public void testCompressedRoundTrip() throws Exception {
+		MapFileTest.assertRoundTrip(true);
+	}
+
+	public void testSharesIdenticalSectors() throws Exception {
+		File file = File.createTempFile("mapfile", ".map");
+		try {
+			MapFile.write(file, WIDTH, HEIGHT, SECTOR_SIZE, MapFileTest.createSectors(5678), false);
+
+			// The two empty sectors should only be stored once
+			int sectorLength = SECTOR_SIZE * SECTOR_SIZE * Tile.DATA_LENGTH;
+			assertEquals(MapFile.HEADER_LENGTH + (WIDTH * HEIGHT * MapFile.INDEX_ENTRY_LENGTH) + ((WIDTH * HEIGHT - 1) * sectorLength), file.length());
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
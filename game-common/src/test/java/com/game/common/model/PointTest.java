@@ -15,4 +15,16 @@ public class PointTest extends TestCase {
 		assertEquals(p1.distanceTo(p2), 10.0d);
 		assertEquals(p2.distanceTo(p1), 10.0d);
 	}
+
+	public void testDirectionTo() {
+		Point p1 = new Point(100, 100);
+
+		// Stepping in a direction and back should give the same direction
+		for (int i = 0;i < Point.DIRECTIONS;i++)
+			assertEquals(i, p1.directionTo(p1.step(i)));
+
+		// Points which aren't adjacent have no direction
+		assertEquals(-1, p1.directionTo(p1));
+		assertEquals(-1, p1.directionTo(new Point(102, 100)));
+	}
 }
@@ -0,0 +1,55 @@
+package com.game.common.model;
+
+import java.util.Random;
+
+// A single sector map for tests, which only checks steps against its own tiles
+public class TestMap extends Map {
+
+	private static class TestTile extends Tile {
+		public TestTile(boolean walkable, boolean hWall, boolean vWall) {
+			// elevation, texture, overlay, hWall, vWall - texture 1 is grass
+			super ((byte) 0, (byte) (walkable ? 1 : 0), (byte) 0, (byte) (hWall ? 1 : 0), (byte) (vWall ? 1 : 0));
+		}
+	}
+
+	private final Tile[][] tiles;
+
+	// Drawn as rows of text, '#' is unwalkable and anything else (or anywhere not drawn) is walkable
+	public TestMap(int sectorSize, String... rows) {
+		super (1, 1, sectorSize);
+
+		tiles = new Tile[sectorSize][sectorSize];
+		for (int x = 0;x < sectorSize;x++) {
+			for (int y = 0;y < sectorSize;y++) {
+				boolean walkable = y >= rows.length || x >= rows[y].length() || rows[y].charAt(x) != '#';
+				tiles[x][y] = new TestTile(walkable, false, false);
+			}
+		}
+	}
+
+	// Randomly placed walls and unwalkable tiles, the same every time for a given seed
+	public TestMap(int sectorSize, long seed) {
+		super (1, 1, sectorSize);
+
+		Random random = new Random(seed);
+
+		tiles = new Tile[sectorSize][sectorSize];
+		for (int x = 0;x < sectorSize;x++) {
+			for (int y = 0;y < sectorSize;y++)
+				tiles[x][y] = new TestTile(random.nextInt(5) > 0, random.nextInt(4) == 0, random.nextInt(4) == 0);
+		}
+	}
+
+	@Override
+	public Tile getTile(int x, int y) {
+		if (x < 0 || x >= tiles.length || y < 0 || y >= tiles[x].length)
+			return null;
+
+		return tiles[x][y];
+	}
+
+	@Override
+	public Tile getTile(Point p) {
+		return this.getTile(p.x, p.y);
+	}
+}
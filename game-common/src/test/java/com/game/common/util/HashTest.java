@@ -1,5 +1,14 @@
 package com.game.common.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.mina.core.buffer.IoBuffer;
+
 import com.game.common.model.Hash;
 
 import junit.framework.TestCase;
@@ -48,4 +57,58 @@ public class HashTest extends TestCase {
 		assertFalse(h3.equals(h1));
 	}
 
+	public void testWriteTo() {
+		Hash h1 = new Hash("hello");
+		IoBuffer buffer = IoBuffer.allocate(Hash.LENGTH);
+
+		h1.writeTo(buffer);
+
+		// the hash should be written as exactly its raw bytes
+		assertEquals(buffer.position(), Hash.LENGTH);
+		assertEquals(buffer.flip().getHexDump().replace(" ", "").toLowerCase(), h1.toString());
+
+		// and reading it back should give the same hash
+		assertEquals(Hash.readFrom(buffer), h1);
+	}
+
+	public void testCompareTo() {
+		Hash h1 = Hash.fromString("0af4c61ddcc5e8a2dabede0f3b482cd9aea9434d");
+		Hash h2 = Hash.fromString("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d");
+		Hash h3 = Hash.fromString("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434e");
+
+		// must sort the same as the hex strings do
+		assertTrue(h1.compareTo(h2) < 0);
+		assertTrue(h2.compareTo(h1) > 0);
+		assertTrue(h2.compareTo(h3) < 0);
+		assertTrue(h3.compareTo(h3) == 0);
+	}
+
+	public void testConcurrentHashing() throws Exception {
+		final Hash expected = new Hash("hello");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+			for (int i = 0;i < 8;i++) {
+				tasks.add(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (int j = 0;j < 1000;j++) {
+							if (!expected.equals(new Hash("hello")))
+								return false;
+						}
+
+						return true;
+					}
+				});
+			}
+
+			// Hashing from several threads at once should never corrupt the digest
+			for (Future<Boolean> result : executor.invokeAll(tasks))
+				assertTrue(result.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
 }
@@ -0,0 +1,114 @@
+package com.game.common.util;
+
+import junit.framework.TestCase;
+
+import com.game.common.model.Map;
+import com.game.common.model.Path;
+import com.game.common.model.Point;
+import com.game.common.model.TestMap;
+
+public class PathFinderTest extends TestCase {
+
+	private static void assertValidPath(Map map, Point start, Point target, Path path) {
+		assertNotNull(path);
+		assertEquals(target, path.getLast());
+
+		Point previous = start;
+		for (Point step : path) {
+			assertTrue("Invalid step from " + previous + " to " + step, map.isValidStep(previous, step));
+			previous = step;
+		}
+	}
+
+	public void testOpenMap() throws Exception {
+		Map map = new TestMap(16);
+
+		Point start = new Point(2, 2);
+		Point target = new Point(12, 7);
+
+		// With nothing in the way the shortest path is as many steps as the longest axis
+		Path path = map.generatePath(start, target);
+		assertValidPath(map, start, target, path);
+		assertEquals(10, path.length());
+	}
+
+	public void testAroundWall() throws Exception {
+		Map map = new TestMap(16,
+			"................",
+			"................",
+			"......#.........",
+			"......#.........",
+			"......#.........",
+			"......#.........",
+			"......#.........",
+			"................"
+		);
+
+		Point start = new Point(3, 4);
+		Point target = new Point(9, 4);
+
+		// The wall forces a detour round either end, and corners can't be cut
+		Path path = map.generatePath(start, target);
+		assertValidPath(map, start, target, path);
+		assertEquals(7, path.length());
+	}
+
+	public void testUnreachable() throws Exception {
+		Map map = new TestMap(16,
+			"................",
+			"........###.....",
+			"........#.#.....",
+			"........###....."
+		);
+
+		Point start = new Point(2, 2);
+
+		// Walled in on every side
+		assertNull(map.generatePath(start, new Point(9, 2)));
+
+		// Not walkable at all
+		assertNull(map.generatePath(start, new Point(8, 2)));
+
+		// Off the map
+		assertNull(map.generatePath(start, new Point(-1, 2)));
+
+		// Already there
+		assertNull(map.generatePath(start, start));
+	}
+
+	public void testMaxRadius() throws Exception {
+		Map map = new TestMap(32);
+
+		Point start = new Point(2, 2);
+
+		// The search only covers maxRadius tiles either side of the start
+		assertNotNull(new PathFinder(map, start, 8).generatePath(new Point(9, 9)));
+		assertNull(new PathFinder(map, start, 8).generatePath(new Point(10, 2)));
+	}
+
+	public void testClose() throws Exception {
+		Map map = new TestMap(16);
+
+		Point start = new Point(2, 2);
+		Point target = new Point(12, 2);
+
+		// Stops as soon as it's close enough to the target
+		Path path = new PathFinder(map, start).generatePath(target, 3);
+		assertNotNull(path);
+		assertEquals(7, path.length());
+		assertTrue(path.getLast().distanceTo(target) <= 3);
+	}
+
+	public void testRepeatedSearches() throws Exception {
+		Map small = new TestMap(8);
+		Map large = new TestMap(32);
+
+		Point start = new Point(1, 1);
+
+		// Searches reuse their working state, so make sure nothing leaks from one search into the next
+		for (int i = 0;i < 100;i++) {
+			assertEquals(5, small.generatePath(start, new Point(6, 6)).length());
+			assertEquals(20, large.generatePath(start, new Point(21, 11)).length());
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.game.common.util;
+
+import junit.framework.TestCase;
+
+public class SlotTableTest extends TestCase {
+
+	public void testAdd() {
+		SlotTable<String> table = new SlotTable<String>(2);
+
+		// Slots should be given out lowest first, and adding again should give the same slot
+		assertEquals(0, table.add("a"));
+		assertEquals(1, table.add("b"));
+		assertEquals(0, table.add("a"));
+
+		// A full table has no more slots
+		assertTrue(table.isFull());
+		assertEquals(-1, table.add("c"));
+	}
+
+	public void testRemove() {
+		SlotTable<String> table = new SlotTable<String>(4);
+		table.add("a");
+		table.add("b");
+		table.add("c");
+
+		// Removed slots should be reused before new ones
+		assertEquals("b", table.remove(1));
+		assertEquals(-1, table.indexOf("b"));
+		assertEquals(1, table.add("d"));
+		assertEquals(3, table.add("e"));
+	}
+
+	public void testPut() {
+		SlotTable<String> table = new SlotTable<String>(4);
+		table.put(2, "a");
+
+		// Putting an entry elsewhere should move it
+		table.put(3, "a");
+		assertNull(table.get(2));
+		assertEquals(3, table.indexOf("a"));
+		assertEquals(1, table.size());
+	}
+}
@@ -47,6 +47,12 @@ public abstract class ElementBuffer extends Pickable {
 		textureBuffer.put(v.v);
 	}
 
+	// Copies count vertices straight out of flat arrays, 3 coordinates per vertex and 2 texture coordinates
+	protected void putVertices(float[] vertices, float[] textureCoords, int count) {
+		vertexBuffer.put(vertices, 0, count * 3);
+		textureBuffer.put(textureCoords, 0, count * 2);
+	}
+
 	protected void updateBuffers() {
 		vertexBuffer.flip();
 		textureBuffer.flip();
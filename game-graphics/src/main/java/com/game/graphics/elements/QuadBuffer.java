@@ -20,4 +20,13 @@ public class QuadBuffer extends ElementBuffer {
 
 		super.updateBuffers();
 	}
+
+	// Quads already laid out as 4 vertices each, in the same order as above
+	public QuadBuffer(float[] vertices, float[] textureCoords, int quads, Sprite texture) {
+		super (quads * 4, texture, GL11.GL_QUADS);
+
+		super.putVertices(vertices, textureCoords, quads * 4);
+
+		super.updateBuffers();
+	}
 }
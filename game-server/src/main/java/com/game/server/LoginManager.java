@@ -0,0 +1,272 @@
+package com.game.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.codec.Packet;
+import com.game.common.codec.PacketBuilder;
+import com.game.common.model.Friend;
+import com.game.common.model.Hash;
+import com.game.common.model.Inventory;
+import com.game.common.model.Item;
+import com.game.common.model.PlayerProfile;
+import com.game.common.model.Stat;
+import com.game.common.util.StatList;
+import com.game.common.util.Statistic;
+import com.game.server.model.Player;
+
+// Looks up logins on a pool of auth threads, then hands them back to the server thread to join the world
+public class LoginManager {
+	private static final Logger log = LoggerFactory.getLogger(LoginManager.class);
+
+	public static final int AUTH_THREADS = 4;
+	public static final int MAX_QUEUED_LOGINS = 1000; // beyond this new logins are turned away
+	public static final int QUEUE_UPDATE_INTERVAL = 2000; // how often to tell waiting clients their position
+	public static final int PENDING_IDLE_TIME = 60; // in seconds, the same as a logged in player
+
+	protected class LoginRequest implements Runnable {
+		protected final IoSession session;
+		protected final Hash id;
+		protected final Hash password;
+		protected final long queued;
+		protected int position;
+		protected PlayerProfile profile;
+
+		protected LoginRequest(IoSession session, Hash id, Hash password) {
+			this.session = session;
+			this.id = id;
+			this.password = password;
+
+			queued = System.currentTimeMillis();
+			position = 0;
+			profile = null;
+		}
+
+		@Override
+		public void run() {
+			waiting.remove(this);
+
+			long start = System.currentTimeMillis();
+			waitTime.add(start - queued);
+
+			// Don't bother with the database if they've already gone
+			if (session.isConnected()) {
+				try {
+					profile = server.getDatabase().getPlayerProfile(id, password);
+				}
+				catch (Exception e) {
+					log.error("Error loading profile for " + id + ": " + e.getMessage());
+				}
+
+				lookupTime.add(System.currentTimeMillis() - start);
+			}
+
+			completed.offer(this);
+		}
+	}
+
+	protected final Server server;
+	protected final ThreadPoolExecutor executor;
+
+	// Logins waiting for an auth thread, in the order they'll be processed
+	protected final Queue<LoginRequest> waiting;
+	// Logins which have been looked up and are waiting for the server thread
+	protected final Queue<LoginRequest> completed;
+	protected long lastQueueUpdate;
+
+	protected final Statistic waitTime;
+	protected final Statistic lookupTime;
+	protected final Statistic loginTime;
+	protected final AtomicInteger rejected;
+	protected int failed;
+
+	public LoginManager(Server server) {
+		this.server = server;
+
+		executor = new ThreadPoolExecutor(AUTH_THREADS, AUTH_THREADS, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_LOGINS), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "login-" + count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
+		waiting = new ConcurrentLinkedQueue<LoginRequest>();
+		completed = new ConcurrentLinkedQueue<LoginRequest>();
+		lastQueueUpdate = 0;
+
+		waitTime = new Statistic();
+		lookupTime = new Statistic();
+		loginTime = new Statistic();
+		rejected = new AtomicInteger();
+		failed = 0;
+	}
+
+	// Queue a login to be looked up, if there are too many waiting already the client is turned away
+	public void submit(IoSession session, Hash id, Hash password) {
+		LoginRequest request = new LoginRequest(session, id, password);
+
+		// The client doesn't send anything while it waits, so don't let it time out in the queue
+		session.getConfig().setIdleTime(IdleStatus.READER_IDLE, PENDING_IDLE_TIME);
+
+		waiting.offer(request);
+
+		try {
+			executor.execute(request);
+		}
+		catch (RejectedExecutionException e) {
+			waiting.remove(request);
+			rejected.incrementAndGet();
+
+			this.sendFailure(session, "The server is busy, please try again later.");
+		}
+	}
+
+	// NOTE: Must be called from the server thread, as it adds players to the world
+	public void update(long now) {
+		LoginRequest request;
+		while ((request = completed.poll()) != null)
+			this.finishLogin(request);
+
+		// Let anyone still waiting know where they are in the queue
+		if (now - lastQueueUpdate >= QUEUE_UPDATE_INTERVAL) {
+			lastQueueUpdate = now;
+
+			int position = 0;
+			for (LoginRequest waitingRequest : waiting) {
+				position++;
+				if (waitingRequest.position == position)
+					continue;
+
+				waitingRequest.position = position;
+
+				PacketBuilder packet = new PacketBuilder(Packet.Type.LOGIN_QUEUE_RESPONSE);
+				packet.putInt(position);
+
+				waitingRequest.session.write(packet);
+			}
+		}
+	}
+
+	private void finishLogin(LoginRequest request) {
+		IoSession session = request.session;
+		PlayerProfile profile = request.profile;
+
+		// They disconnected while we were looking them up
+		if (!session.isConnected())
+			return;
+
+		WorldManager world = server.getWorldManager();
+
+		// The profile wasn't found (i.e. the user and/or pass was wrong)
+		if (profile == null) {
+			this.sendFailure(session, "Invalid username and/or password.");
+			return;
+		}
+
+		// The client is already logged in
+		if (world.getPlayer(request.id) != null) {
+			this.sendFailure(session, "Account already in use.");
+			return;
+		}
+
+		// Confirm the profile isn't corrupt
+		if (profile.stats.size() != StatList.NUM_STATS || profile.inventory.size() > Inventory.MAX_SIZE) {
+			log.error("Corrupt profile found for user: " + request.id);
+
+			this.sendFailure(session, "Profile corrupt! Please contact support.");
+			return;
+		}
+
+		// Set the online status for all friends, now we're on the server thread the world is safe to look at
+		for (Friend friend : profile.friends)
+			friend.setOnline(world.getPlayer(friend.getID()) != null);
+
+		PacketBuilder response = new PacketBuilder(Packet.Type.LOGIN_RESPONSE);
+		response.putBoolean(true);
+
+		// Send some user related information so the client knows who they are
+		response.putHash(profile.id);				// id
+		response.putString(profile.username);		// username
+		response.putPoint(profile.location);		// location
+
+		// inventory
+		response.putByte((byte) profile.inventory.size());
+		for (Item item : profile.inventory)
+			response.putItem(item);
+
+		// stats
+		for (Stat stat : profile.stats)
+			response.putStat(stat);
+
+		// friends
+		response.putShort((short) profile.friends.size());
+		for (Friend friend : profile.friends)
+			response.putFriend(friend);
+
+		response.putDate(profile.registered);
+		response.putDate(profile.lastSession);
+
+		session.write(response);
+
+		// Attach the client
+		Player player = new Player(server, session, profile);
+
+		session.setAttribute("client", player);
+		session.removeAttribute("pending");
+
+		world.addPlayer(player);
+
+		loginTime.add(System.currentTimeMillis() - request.queued);
+	}
+
+	private void sendFailure(IoSession session, String message) {
+		synchronized (this) {
+			failed++;
+		}
+
+		PacketBuilder response = new PacketBuilder(Packet.Type.LOGIN_RESPONSE);
+
+		response.putBoolean(false);
+		response.putString(message);
+
+		// Close the session once they've been told why (gracefully)
+		session.write(response);
+		session.close(false);
+
+		if (log.isDebugEnabled())
+			log.debug("Login failed, closing session: " + message);
+	}
+
+	public int getQueueDepth() {
+		return waiting.size();
+	}
+
+	public synchronized void resetStatistics() {
+		waitTime.reset();
+		lookupTime.reset();
+		loginTime.reset();
+		rejected.set(0);
+		failed = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "logins[succeeded = " + loginTime.getCount() + ", failed = " + failed + ", rejected = " + rejected.get() + ", queued = " + waiting.size() + ", wait = " + String.format("%.2fms", waitTime.getMean()) + ", lookup = " + String.format("%.2fms", lookupTime.getMean()) + ", total = " + String.format("%.2fms", loginTime.getMean()) + " (max " + loginTime.getMax() + "ms)]";
+	}
+}
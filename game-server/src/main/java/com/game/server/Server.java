@@ -5,10 +5,13 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.security.PrivateKey;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -37,6 +40,9 @@ public class Server implements IoHandler, Runnable {
 
 	public static final int DEFAULT_PORT = 36954;
 	public static final int LOOP_DELAY = 100;
+	public static final int MAX_CATCH_UP_TICKS = 5; // if we fall further behind than this, skip the missed ticks
+	public static final int STATISTICS_INTERVAL = 60000; // how often to log the tick statistics
+	public static final int MAX_QUEUED_PACKETS = 32; // per session
 
 	protected static final Options options;
 
@@ -46,6 +52,8 @@ public class Server implements IoHandler, Runnable {
 		options.addOption("h", "help", false, "print this help.");
 		options.addOption("p", "port", true, "port number to listen on, default " + DEFAULT_PORT + ".");
 		options.addOption("b", "bind", true, "IP address to bind to, default all.");
+		options.addOption("t", "tick", true, "milliseconds per server tick, default " + LOOP_DELAY + ".");
+		options.addOption("e", "embedded", true, "use an embedded database stored at this path (or '" + Database.IN_MEMORY + "') instead of MySQL.");
 	}
 
 	public static void main(String[] args) {
@@ -70,50 +78,68 @@ public class Server implements IoHandler, Runnable {
 		}
 	}
 
+	// Creates a server without starting it, for anything (such as benchmarks) which wants to drive the world itself
+	// NOTE: Nothing is bound until start() is called
+	public static Server create(String... args) throws ParseException {
+		CommandLineParser parser = new PosixParser();
+		CommandLine config = parser.parse(options, args);
+
+		return new Server(config);
+	}
+
 	protected final CommandLine config;
 	protected final NioSocketAcceptor acceptor;
 	protected final Map<Packet.Type, PacketHandler> packetHandlers;
 	protected final Database db;
 	protected final WorldManager world;
+	protected final LoginManager logins;
 	protected final PrivateKey privateKey;
 	protected final Queue<Packet> packets;
+	protected final Queue<IoSession> closedSessions;
+	protected final TickStatistics statistics;
+	protected final int tickRate;
 	protected boolean running;
-	protected long lastPacketUpdate;
 
 	private Server(CommandLine config) {
 		this.config = config;
 
 		packetHandlers = this.loadPacketHandlers();
 
-		// Connection to the MySQL database
-		File dbConfig = new File("database.conf.xml");
-		if (!dbConfig.exists()) {
-			// fatal error
-			throw new RuntimeException("Unable to load database config file: " + dbConfig.getAbsolutePath());
-		}
-
 		privateKey = (PrivateKey) PersistenceManager.load(Server.class.getResource("privatekey.xml"));
 
 		// Pre-load the item definitions
 		Item.load();
 
-		db = new Database(dbConfig, this);
+		db = this.loadDatabase();
+
+		// Make sure any queued profiles get written before we exit
+		Runtime.getRuntime().addShutdownHook(new Thread("database-shutdown") {
+			@Override
+			public void run() {
+				db.close();
+			}
+		});
 
 		acceptor = new NioSocketAcceptor();
 		acceptor.setReuseAddress(true);
 
 		acceptor.getFilterChain().addLast("codec", new ProtocolCodecFilter(new PacketCodecFactory()));
 
-		// Set the idle timeout to 5 seconds - once a client has logged in this gets increased
+		// Set the idle timeout to 5 seconds - once a client is queued to log in (and after it has logged in) this gets increased
 		acceptor.getSessionConfig().setIdleTime(IdleStatus.READER_IDLE, 5);
 		acceptor.setHandler(this);
 
 		world = new WorldManager(this);
+		logins = new LoginManager(this);
+
+		// These are filled by the network threads and drained by the server thread
+		packets = new ConcurrentLinkedQueue<Packet>();
+		closedSessions = new ConcurrentLinkedQueue<IoSession>();
 
-		packets = new LinkedList<Packet>();
+		statistics = new TickStatistics();
+		tickRate = this.loadTickRate();
 
 		running = false;
-		lastPacketUpdate = 0;
 	}
 
 	private Map<Packet.Type, PacketHandler> loadPacketHandlers() {
@@ -151,15 +177,95 @@ public class Server implements IoHandler, Runnable {
 		return world;
 	}
 
+	public LoginManager getLoginManager() {
+		return logins;
+	}
+
+	public TickStatistics getTickStatistics() {
+		return statistics;
+	}
+
+	private Database loadDatabase() {
+		// An in-process database, useful for testing without a MySQL server
+		if (config.hasOption("e"))
+			return new Database(Database.createEmbeddedConfig(config.getOptionValue("e")), this);
+
+		// Connection to the MySQL database
+		File dbConfig = new File("database.conf.xml");
+		if (!dbConfig.exists()) {
+			// fatal error
+			throw new RuntimeException("Unable to load database config file: " + dbConfig.getAbsolutePath());
+		}
+
+		return new Database(dbConfig, this);
+	}
+
+	private int loadTickRate() {
+		if (!config.hasOption("t"))
+			return LOOP_DELAY;
+
+		try {
+			int tickRate = Integer.parseInt(config.getOptionValue("t"));
+			if (tickRate > 0)
+				return tickRate;
+		}
+		catch (NumberFormatException e) { }
+
+		// fatal error
+		throw new RuntimeException("Invalid tick rate: " + config.getOptionValue("t"));
+	}
+
 	@Override
 	public void run() {
+		long period = tickRate * 1000000L;
+
+		// The tick times passed to the world are fixed multiples of the tick rate, so it doesn't drift
+		long time = System.currentTimeMillis();
+		long lastStatistics = time;
+		long next = System.nanoTime();
+
 		while (running) {
-			long start = System.currentTimeMillis();
-			this.update(start);
+			long start = System.nanoTime();
+			this.update(time);
+
+			long now = System.nanoTime();
+			next += period;
+			time += tickRate;
+
+			int skipped = 0;
+			// We finished early, so wait until the next tick is due
+			if (next > now) {
+				try { Thread.sleep((next - now) / 1000000, (int) ((next - now) % 1000000)); } catch (InterruptedException e) { }
+			}
+			// We're too far behind to catch up, so skip the ticks we've missed
+			else if (now - next > period * MAX_CATCH_UP_TICKS) {
+				skipped = (int) ((now - next) / period);
+
+				next += skipped * period;
+				time += skipped * tickRate;
+			}
+
+			boolean overrun = now - start > period;
+			statistics.end(now - start, overrun, skipped);
+
+			if (overrun)
+				log.warn("Tick overran by " + ((now - start - period) / 1000000) + "ms" + (skipped > 0 ? ", skipping " + skipped + " ticks" : "") + ": " + statistics.toLastString());
 
-			int duration = (int) (System.currentTimeMillis() - start);
-			if (duration < LOOP_DELAY) {
-				try { Thread.sleep(LOOP_DELAY - duration); } catch (InterruptedException e) { }
+			if (time - lastStatistics >= STATISTICS_INTERVAL) {
+				lastStatistics = time;
+
+				log.info("Tick statistics: " + statistics);
+				statistics.reset();
+
+				log.info("Database statistics: " + db.getWriter() + ", " + db.getCache());
+				db.getWriter().resetStatistics();
+				db.getCache().resetStatistics();
+
+				log.info("Login statistics: " + logins);
+				logins.resetStatistics();
+
+				log.info("Path statistics: " + world.getPathCache());
+				world.getPathCache().resetStatistics();
 			}
 		}
 
@@ -167,16 +273,58 @@ public class Server implements IoHandler, Runnable {
 	}
 
 	private void update(long now) {
-		// Process the queued packets
-		synchronized (packets) {
-			for (Packet message : packets)
-				this.processPacket(message);
+		statistics.begin();
+
+		// Take the queued packets off the network queue
+		List<Packet> messages = new ArrayList<Packet>();
+
+		Packet message;
+		while ((message = packets.poll()) != null) {
+			AtomicInteger queued = (AtomicInteger) message.getSession().getAttribute("queued");
+			queued.decrementAndGet();
+
+			messages.add(message);
+		}
+
+		List<IoSession> sessions = new ArrayList<IoSession>();
+
+		IoSession session;
+		while ((session = closedSessions.poll()) != null)
+			sessions.add(session);
+
+		statistics.mark(TickStatistics.Phase.DRAIN);
 
-			packets.clear();
+		// Process the queued packets, then give their buffers back
+		for (Packet queuedMessage : messages) {
+			this.processPacket(queuedMessage);
+			queuedMessage.release();
 		}
 
+		// Add anyone whose login has been looked up to the world, before we deal with closed sessions
+		logins.update(now);
+
+		// Remove any clients whose session has closed, this must happen after processing packets
+		// in-case a login was processed for a session which has since closed
+		for (IoSession closedSession : sessions) {
+			// If the session has a client attached, remove them from the world
+			if (closedSession.containsAttribute("client")) {
+				Player client = (Player) closedSession.getAttribute("client");
+				world.removePlayer(client);
+			}
+			// Otherwise they haven't logged in yet, so who cares just drop them
+		}
+
+		statistics.mark(TickStatistics.Phase.HANDLERS);
+
 		// Update the world
 		world.update(now);
+
+		statistics.mark(TickStatistics.Phase.WORLD);
+
+		// Send everything queued up this tick
+		world.flush();
+
+		statistics.mark(TickStatistics.Phase.FLUSH);
 	}
 
 	private boolean processPacket(Packet message) {
@@ -254,35 +402,44 @@ public class Server implements IoHandler, Runnable {
 		session.close(true);
 	}
 
+	private void queuePacket(IoSession session, Packet message) {
+		AtomicInteger queued = (AtomicInteger) session.getAttribute("queued");
+		// The client is sending packets faster than we can process them, close the session (forcefully)
+		if (queued.incrementAndGet() > MAX_QUEUED_PACKETS) {
+			queued.decrementAndGet();
+
+			log.warn("Too many queued packets from: " + (session.containsAttribute("client") ? session.getAttribute("client") : "new") + " connection");
+			session.close(true);
+			return;
+		}
+
+		packets.offer(message);
+	}
+
 	@Override
 	public void messageReceived(IoSession session, Object o) throws Exception {
+		// NOTE: MINA only delivers 1 packet from a session at a time, so we don't need to lock the session here
 		Packet message = (Packet) o;
-		// We should only process 1 packet from a session at a time
-		synchronized (session) {
-			// If there is a client, queue the packet for processing
-			if (session.containsAttribute("client") || session.containsAttribute("pending")) {
-				synchronized (packets) {
-					packets.add(message);
-				}
-			}
-			// If there isn't a client attached then this must be the login request
-			else if (message.getType() == Packet.Type.LOGIN_SEND) {
-				// Decrypt the login request
-				message.decrypt(privateKey);
-
-				// Mark this session as pending login
-				session.setAttribute("pending");
-
-				// Queue the packet
-				synchronized (packets) {
-					packets.add(message);
-				}
-			}
-			// Otherwise this packet shouldn't be here!
-			else {
-				log.warn("Client isn't logged in, but sent a packet");
-				session.close(true);
-			}
+
+		// If there is a client, queue the packet for processing
+		if (session.containsAttribute("client") || session.containsAttribute("pending")) {
+			this.queuePacket(session, message);
+		}
+		// If there isn't a client attached then this must be the login request
+		else if (message.getType() == Packet.Type.LOGIN_SEND) {
+			// Decrypt the login request
+			message.decrypt(privateKey);
+
+			// Mark this session as pending login
+			session.setAttribute("pending");
+
+			// Queue the packet
+			this.queuePacket(session, message);
+		}
+		// Otherwise this packet shouldn't be here!
+		else {
+			log.warn("Client isn't logged in, but sent a packet");
+			session.close(true);
 		}
 	}
 
@@ -291,18 +448,14 @@ public class Server implements IoHandler, Runnable {
 
 	@Override
 	public void sessionClosed(IoSession session) throws Exception {
-		synchronized (packets) {
-			// If the session has a client attached, call the session closed method
-			if (session.containsAttribute("client")) {
-				Player client = (Player) session.getAttribute("client");
-				world.removePlayer(client);
-			}
-			// Otherwise they haven't logged in yet, so who cares just drop them
-		}
+		// Let the server thread remove the client, so we don't have to wait on the world
+		closedSessions.offer(session);
 	}
 
 	@Override
-	public void sessionCreated(IoSession session) throws Exception { }
+	public void sessionCreated(IoSession session) throws Exception {
+		session.setAttribute("queued", new AtomicInteger());
+	}
 
 	@Override
 	public void sessionIdle(IoSession session, IdleStatus status) throws Exception {
@@ -0,0 +1,114 @@
+package com.game.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.game.common.util.Statistic;
+
+public class TickStatistics {
+
+	public enum Phase {
+		DRAIN,		// taking packets off the network queues
+		HANDLERS,	// running the packet handlers
+		WORLD,		// updating the world
+		FLUSH,		// writing the queued packets out to the sessions
+	}
+
+	protected final Statistic ticks;
+	protected final Map<Phase, Statistic> phases;
+	protected long overruns;
+	protected long skipped;
+	protected long phaseStart;
+
+	public TickStatistics() {
+		ticks = new Statistic();
+
+		phases = new EnumMap<Phase, Statistic>(Phase.class);
+		for (Phase phase : Phase.values())
+			phases.put(phase, new Statistic());
+
+		overruns = 0;
+		skipped = 0;
+		phaseStart = 0;
+	}
+
+	public void begin() {
+		phaseStart = System.nanoTime();
+	}
+
+	public void mark(Phase phase) {
+		long now = System.nanoTime();
+
+		phases.get(phase).add(now - phaseStart);
+		phaseStart = now;
+	}
+
+	public synchronized void end(long duration, boolean overrun, int skippedTicks) {
+		ticks.add(duration);
+
+		if (overrun)
+			overruns++;
+
+		skipped += skippedTicks;
+	}
+
+	public Statistic getTicks() {
+		return ticks;
+	}
+
+	public Statistic getPhase(Phase phase) {
+		return phases.get(phase);
+	}
+
+	public synchronized long getOverruns() {
+		return overruns;
+	}
+
+	public synchronized long getSkipped() {
+		return skipped;
+	}
+
+	public synchronized void reset() {
+		ticks.reset();
+
+		for (Statistic phase : phases.values())
+			phase.reset();
+
+		overruns = 0;
+		skipped = 0;
+	}
+
+	// Times of the most recent tick, useful to see which phase caused an overrun
+	public String toLastString() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("tick[duration = ").append(TickStatistics.toMillis(ticks.getLast()));
+		for (Map.Entry<Phase, Statistic> entry : phases.entrySet())
+			builder.append(", ").append(entry.getKey().name().toLowerCase()).append(" = ").append(TickStatistics.toMillis(entry.getValue().getLast()));
+
+		return builder.append("]").toString();
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("ticks[count = ").append(ticks.getCount());
+		builder.append(", mean = ").append(TickStatistics.toMillis(ticks.getMean()));
+		builder.append(", max = ").append(TickStatistics.toMillis(ticks.getMax()));
+		builder.append(", overruns = ").append(overruns);
+		builder.append(", skipped = ").append(skipped);
+
+		for (Map.Entry<Phase, Statistic> entry : phases.entrySet()) {
+			builder.append(", ").append(entry.getKey().name().toLowerCase());
+			builder.append(" = ").append(TickStatistics.toMillis(entry.getValue().getMean()));
+			builder.append("/").append(TickStatistics.toMillis(entry.getValue().getMax()));
+		}
+
+		return builder.append("]").toString();
+	}
+
+	private static String toMillis(double nanos) {
+		return String.format("%.2fms", nanos / 1000000);
+	}
+}
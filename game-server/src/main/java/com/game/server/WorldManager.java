@@ -1,26 +1,63 @@
 package com.game.server;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.game.common.model.Hash;
 import com.game.common.util.EntityList;
+import com.game.server.model.PathCache;
 import com.game.server.model.Player;
 import com.game.server.model.WorldMap;
 
 public class WorldManager {
+	private static final Logger log = LoggerFactory.getLogger(WorldManager.class);
+
 	public static final int PLAYER_UPDATE_DELAY = 200;
+	public static final int PARALLEL_UPDATE_THRESHOLD = 64; // below this many players it isn't worth splitting the work
+
+	protected interface PlayerTask {
+		public void run(Player player);
+	}
 
 	protected final Server server;
 	protected final WorldMap map;
+	protected final PathCache paths;
 	protected final EntityList<Player> players;
+	protected final ExecutorService updater;
+	protected final int updateThreads;
 	protected long lastPlayerUpdate;
 
 	public WorldManager(Server server) {
 		this.server = server;
 
 		map = WorldMap.load();
+		paths = new PathCache(map);
 		players = new EntityList<Player>();
 
+		updateThreads = Runtime.getRuntime().availableProcessors();
+		updater = Executors.newFixedThreadPool(updateThreads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "world-updater-" + count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
 		lastPlayerUpdate = 0;
 	}
 
@@ -28,31 +65,58 @@ public class WorldManager {
 		return map;
 	}
 
-	public void update(long now) {
-		if (now - lastPlayerUpdate > PLAYER_UPDATE_DELAY) {
+	public PathCache getPathCache() {
+		return paths;
+	}
+
+	public void update(final long now) {
+		if (now - lastPlayerUpdate >= PLAYER_UPDATE_DELAY) {
 			lastPlayerUpdate = now;
 
 			synchronized (players) {
-				// Update all the players
-				for (Player player : players.allEntities())
-					player.update(now, players);
-
-				Collection<Player> newPlayers = players.newEntities();
-				Collection<Player> removedPlayers = players.removedEntities();
-
-				// Alert all the players of any logins/logouts
-				for (Player player : players.allEntities()) {
-					// Alert this player if any of the new players are their friends
-					for (Player newPlayer : newPlayers) {
-						if (player.getFriends().contains(newPlayer.getID()))
-							player.sendFriendLogin(newPlayer.getID(), true);
-					}
+				List<Player> allPlayers = new ArrayList<Player>(players.allEntities());
 
-					// Alert this player is any of the removed players are their friends
-					for (Player removedPlayer : removedPlayers) {
-						if (player.getFriends().contains(removedPlayer.getID()))
-							player.sendFriendLogin(removedPlayer.getID(), false);
+				final Collection<Player> newPlayers = players.newEntities();
+				final Collection<Player> removedPlayers = players.removedEntities();
+
+				// Work out where everyone is moving to, this only reads the map so can be done in parallel
+				this.updateParallel(allPlayers, new PlayerTask() {
+					@Override
+					public void run(Player player) {
+						player.updatePath(now);
+					}
+				});
+
+				// Actually move everyone, this touches the map (and every observer) so must be done serially
+				for (Player player : allPlayers)
+					player.updateLocation(now);
+
+				// Work out what each player can see and send them the changes
+				this.updateParallel(allPlayers, new PlayerTask() {
+					@Override
+					public void run(Player player) {
+						player.update(now, players);
+
+						// Alert this player if any of the new players are their friends
+						for (Player newPlayer : newPlayers) {
+							if (player.getFriends().contains(newPlayer.getID()))
+								player.sendFriendLogin(newPlayer.getID(), true);
+						}
+
+						// Alert this player is any of the removed players are their friends
+						for (Player removedPlayer : removedPlayers) {
+							if (player.getFriends().contains(removedPlayer.getID()))
+								player.sendFriendLogin(removedPlayer.getID(), false);
+						}
 					}
+				});
+
+				// Everyone has been told about this tick's movement, so the next is relative to here
+				for (Player player : allPlayers) {
+					player.commitLocation();
+
+					// Save anyone who has changed since their last save, each player is due at a different time
+					player.autosave(now);
 				}
 
 				players.reset();
@@ -60,6 +124,72 @@ public class WorldManager {
 		}
 	}
 
+	public void flush() {
+		synchronized (players) {
+			List<Player> allPlayers = new ArrayList<Player>(players.allEntities());
+
+			// Send each player everything queued for them this tick
+			this.updateParallel(allPlayers, new PlayerTask() {
+				@Override
+				public void run(Player player) {
+					player.flush();
+				}
+			});
+		}
+	}
+
+	private void updateParallel(final List<Player> players, final PlayerTask task) {
+		// Not enough players to make it worth handing off to the other threads
+		if (players.size() < PARALLEL_UPDATE_THRESHOLD) {
+			for (Player player : players)
+				WorldManager.run(task, player);
+
+			return;
+		}
+
+		// Split the players into one chunk per thread
+		int chunkSize = (players.size() + updateThreads - 1) / updateThreads;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(updateThreads);
+
+		for (int start = 0;start < players.size();start += chunkSize) {
+			final List<Player> chunk = players.subList(start, Math.min(start + chunkSize, players.size()));
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (Player player : chunk)
+						WorldManager.run(task, player);
+
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> result : updater.invokeAll(tasks)) {
+				try {
+					result.get();
+				}
+				catch (ExecutionException e) {
+					log.error("Error updating players", e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			log.warn("Interrupted while updating players");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// One player going wrong shouldn't stop everyone else being updated
+	private static void run(PlayerTask task, Player player) {
+		try {
+			task.run(player);
+		}
+		catch (RuntimeException e) {
+			log.error("Error updating " + player, e);
+		}
+	}
+
 	public Collection<Player> getPlayers() {
 		return players.allEntities();
 	}
@@ -0,0 +1,185 @@
+package com.game.server.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.model.Hash;
+import com.game.common.model.Inventory;
+import com.game.common.model.PlayerProfile;
+import com.game.common.model.Point;
+import com.game.common.model.Stat;
+import com.game.common.model.Tile;
+import com.game.common.util.FriendList;
+import com.game.common.util.StatList;
+import com.game.server.model.WorldMap;
+
+// Fills a database with synthetic accounts for load testing, named <prefix><number>
+public class AccountSeeder {
+	private static final Logger log = LoggerFactory.getLogger(AccountSeeder.class);
+
+	public static final int DEFAULT_COUNT = 1000;
+	public static final String DEFAULT_PREFIX = "bot";
+	public static final String DEFAULT_PASSWORD = "password";
+	public static final int SPAWN_RADIUS = 32; // accounts are spread over this many tiles around the spawn
+	public static final int MAX_SPAWN_ATTEMPTS = 100;
+
+	protected static final Options options;
+
+	static {
+		options = new Options();
+
+		options.addOption("h", "help", false, "print this help.");
+		options.addOption("e", "embedded", true, "seed an embedded database stored at this path.");
+		options.addOption("c", "config", true, "seed the database in this hibernate config file instead.");
+		options.addOption("n", "count", true, "number of accounts to create, default " + DEFAULT_COUNT + ".");
+		options.addOption("u", "prefix", true, "username prefix, default '" + DEFAULT_PREFIX + "'.");
+		options.addOption("w", "password", true, "password for every account, default '" + DEFAULT_PASSWORD + "'.");
+		options.addOption("s", "spawn", true, "x,y location to spread the accounts around, default anywhere walkable.");
+	}
+
+	public static void main(String[] args) {
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine config = parser.parse(options, args);
+
+			if (config.hasOption("h") || (!config.hasOption("e") && !config.hasOption("c"))) {
+				HelpFormatter help = new HelpFormatter();
+				help.printHelp("java " + AccountSeeder.class.getSimpleName(), options);
+				return;
+			}
+
+			Database db;
+			if (config.hasOption("e"))
+				db = new Database(Database.createEmbeddedConfig(config.getOptionValue("e")), null);
+			else
+				db = new Database(new File(config.getOptionValue("c")), null);
+
+			int count = Integer.parseInt(config.getOptionValue("n", String.valueOf(DEFAULT_COUNT)));
+			String prefix = config.getOptionValue("u", DEFAULT_PREFIX);
+			String password = config.getOptionValue("w", DEFAULT_PASSWORD);
+
+			WorldMap map = WorldMap.load();
+
+			Point spawn = null;
+			if (config.hasOption("s")) {
+				String[] parts = config.getOptionValue("s").split(",");
+				spawn = new Point(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+			}
+
+			AccountSeeder seeder = new AccountSeeder(db, map);
+
+			long start = System.currentTimeMillis();
+			seeder.seed(count, prefix, password, spawn);
+			long duration = System.currentTimeMillis() - start;
+
+			log.info("Created " + count + " accounts in " + duration + "ms");
+
+			db.close();
+		}
+		catch (ParseException e) {
+			log.error("Error parsing command line options: " + e);
+		}
+		catch (NumberFormatException e) {
+			log.error("Invalid number: " + e.getMessage());
+		}
+		catch (RuntimeException e) {
+			log.error(e.getMessage());
+		}
+	}
+
+	public static PlayerProfile createProfile(String username, String password, Point location) {
+		PlayerProfile profile = new PlayerProfile();
+
+		// The same hashing the client does when logging in
+		profile.id = new Hash(username.toLowerCase());
+		profile.setPassword(new Hash(profile.id + password));
+
+		profile.username = username;
+		profile.location = location;
+
+		profile.inventory = new Inventory();
+
+		List<Stat> stats = new ArrayList<Stat>(StatList.NUM_STATS);
+		for (Stat.Type type : Stat.Type.values())
+			stats.add(new Stat(type, 0, 1));
+
+		profile.stats = new StatList(stats);
+		profile.friends = new FriendList();
+
+		profile.registered = new Date();
+		profile.lastSession = new Date(0);
+
+		return profile;
+	}
+
+	protected final Database db;
+	protected final WorldMap map;
+	protected final Random random;
+	protected final List<Point> walkable;
+
+	public AccountSeeder(Database db, WorldMap map) {
+		this.db = db;
+		this.map = map;
+
+		random = new Random();
+
+		// Find everywhere an account could be placed
+		walkable = new ArrayList<Point>();
+		for (int x = 0;x < map.getWidth();x++) {
+			for (int y = 0;y < map.getHeight();y++) {
+				if (map.getTile(x, y).isWalkable())
+					walkable.add(new Point(x, y));
+			}
+		}
+
+		if (walkable.isEmpty())
+			throw new RuntimeException("Unable to seed accounts, the map has no walkable tiles");
+	}
+
+	public void seed(int count, String prefix, String password, Point spawn) {
+		List<PlayerProfile> batch = new ArrayList<PlayerProfile>(ProfileWriter.BATCH_SIZE);
+
+		for (int i = 0;i < count;i++) {
+			batch.add(AccountSeeder.createProfile(prefix + i, password, this.findLocation(spawn)));
+
+			if (batch.size() == ProfileWriter.BATCH_SIZE) {
+				db.create(batch);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty())
+			db.create(batch);
+	}
+
+	// Picks a random walkable tile near the spawn (or anywhere if there isn't one), so the accounts don't all start on top of each other
+	protected Point findLocation(Point spawn) {
+		if (spawn == null)
+			return walkable.get(random.nextInt(walkable.size()));
+
+		for (int i = 0;i < MAX_SPAWN_ATTEMPTS;i++) {
+			Point location = new Point(spawn.x + random.nextInt(SPAWN_RADIUS * 2 + 1) - SPAWN_RADIUS, spawn.y + random.nextInt(SPAWN_RADIUS * 2 + 1) - SPAWN_RADIUS);
+
+			if (location.x < 0 || location.x >= map.getWidth() || location.y < 0 || location.y >= map.getHeight())
+				continue;
+
+			Tile tile = map.getTile(location);
+			if (tile != null && tile.isWalkable())
+				return location;
+		}
+
+		return new Point(spawn.x, spawn.y);
+	}
+}
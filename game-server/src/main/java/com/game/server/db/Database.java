@@ -1,7 +1,9 @@
 package com.game.server.db;
 
 import java.io.File;
+import java.util.Collection;
 
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
@@ -14,46 +16,99 @@ import com.game.common.model.Hash;
 import com.game.common.model.PlayerProfile;
 import com.game.common.model.Stat;
 import com.game.server.Server;
-import com.game.server.WorldManager;
 
 public class Database {
 	private static final Logger log = LoggerFactory.getLogger(Database.class);
 
+	public static final String BATCH_SIZE = String.valueOf(ProfileWriter.BATCH_SIZE);
+	public static final String MAPPING_RESOURCE = "com/game/server/db/mapping.xml";
+	public static final String IN_MEMORY = "mem";
+
+	// Builds a config for an in-process H2 database, stored at the given path (or in memory), creating the schema if needed
+	public static Configuration createEmbeddedConfig(String path) {
+		Configuration config = new Configuration();
+
+		String url;
+		if (path.equals(IN_MEMORY))
+			url = "jdbc:h2:mem:game;DB_CLOSE_DELAY=-1";
+		else
+			url = "jdbc:h2:" + new File(path).getAbsolutePath();
+
+		config.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+		config.setProperty("hibernate.connection.url", url);
+		config.setProperty("hibernate.connection.username", "sa");
+		config.setProperty("hibernate.connection.password", "");
+		config.setProperty("hibernate.connection.pool_size", "10");
+		config.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		config.setProperty("hibernate.current_session_context_class", "thread");
+		config.setProperty("hibernate.hbm2ddl.auto", "update");
+
+		config.addResource(MAPPING_RESOURCE);
+
+		return config;
+	}
+
 	protected final SessionFactory factory;
 	protected final Server server;
+	protected final ProfileWriter writer;
+	protected final ProfileCache cache;
 
 	public Database(File configFile, Server server) {
-		factory = new Configuration().configure(configFile).buildSessionFactory();
+		this(new Configuration().configure(configFile), server);
+	}
+
+	public Database(Configuration config, Server server) {
+		// Let hibernate send the writers batches to the database together, unless the config says otherwise
+		if (config.getProperty("hibernate.jdbc.batch_size") == null)
+			config.setProperty("hibernate.jdbc.batch_size", BATCH_SIZE);
+
+		factory = config.buildSessionFactory();
 
 		this.server = server;
+
+		cache = new ProfileCache();
+		writer = new ProfileWriter(this);
+	}
+
+	public ProfileWriter getWriter() {
+		return writer;
+	}
+
+	public ProfileCache getCache() {
+		return cache;
 	}
 
 	public PlayerProfile getPlayerProfile(Hash id, Hash password) {
-		Session session = factory.getCurrentSession();
-		session.beginTransaction();
+		// The cache always has the latest version of a profile, even if it's still waiting to be saved
+		PlayerProfile profile = cache.getProfile(id, password);
+		if (profile == null) {
+			// Make sure we don't load a stale profile if it's still waiting to be saved
+			writer.flush(id);
 
-		PlayerProfile profile = (PlayerProfile) session.createCriteria(PlayerProfile.class)
-												.add(Restrictions.idEq(id))
-												.add(Restrictions.eq("password", password))
-												.uniqueResult();
+			Session session = factory.getCurrentSession();
+			session.beginTransaction();
 
-		session.getTransaction().commit();
+			profile = (PlayerProfile) session.createCriteria(PlayerProfile.class)
+										.add(Restrictions.idEq(id))
+										.add(Restrictions.eq("password", password))
+										.uniqueResult();
 
-		if (profile == null) {
-			if (log.isDebugEnabled())
-				log.debug("Failed login attempt for: " + id);
+			session.getTransaction().commit();
 
-			return null;
-		}
+			if (profile == null) {
+				if (log.isDebugEnabled())
+					log.debug("Failed login attempt for: " + id);
 
-		if (log.isDebugEnabled())
-			log.debug("Loaded profile: " + profile);
+				return null;
+			}
 
-		WorldManager world = server.getWorldManager();
+			cache.putProfile(profile);
+
+			if (log.isDebugEnabled())
+				log.debug("Loaded profile: " + profile);
+		}
 
-		// Set the online status for all friends
-		for (Friend friend : profile.friends)
-			friend.setOnline(world.getPlayer(friend.getID()) != null);
+		// NOTE: This is called from the login threads, so the friends online status is set once back on the server thread
 
 		// Set the association between the stat list and the stats, as well as their type
 		for (Stat.Type type : Stat.Type.values()) {
@@ -70,17 +125,22 @@ public class Database {
 	}
 
 	public Friend getFriend(String username) {
-		Session session = factory.getCurrentSession();
-		session.beginTransaction();
+		Friend friend = cache.getFriend(username);
+		if (friend == null) {
+			Session session = factory.getCurrentSession();
+			session.beginTransaction();
+
+			friend = (Friend) session.createCriteria(Friend.class)
+							.add(Restrictions.eq("username", username))
+							.uniqueResult();
 
-		Friend friend = (Friend) session.createCriteria(Friend.class)
-								.add(Restrictions.eq("username", username))
-								.uniqueResult();
+			session.getTransaction().commit();
 
-		session.getTransaction().commit();
+			if (friend == null)
+				return null;
 
-		if (friend == null)
-			return null;
+			cache.putFriend(friend);
+		}
 
 		// Set their online status
 		friend.setOnline(server.getWorldManager().getPlayer(friend.getID()) != null);
@@ -88,18 +148,80 @@ public class Database {
 		return friend;
 	}
 
+	// NOTE: The profile is queued and written in the background
 	public void save(PlayerProfile profile) {
 		if (profile == null)
 			return;
 
+		writer.queue(profile);
+	}
+
+	// Inserts brand new profiles in a single transaction
+	public void create(Collection<PlayerProfile> profiles) {
+		Session session = factory.getCurrentSession();
+
+		try {
+			session.beginTransaction();
+
+			int count = 0;
+			for (PlayerProfile profile : profiles) {
+				session.save(profile);
+
+				// Send each batch to the database and stop hibernate holding on to them
+				if (++count % ProfileWriter.BATCH_SIZE == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+
+			session.getTransaction().commit();
+		}
+		catch (HibernateException e) {
+			if (session.getTransaction().isActive())
+				session.getTransaction().rollback();
+
+			throw new RuntimeException("Error creating " + profiles.size() + " profiles: " + e.getMessage());
+		}
+	}
+
+	// Writes the profiles in a single transaction, returns false if it failed and nothing was written
+	protected boolean write(Collection<PlayerProfile> profiles) {
 		Session session = factory.getCurrentSession();
-		session.beginTransaction();
 
-		session.update(profile);
+		try {
+			session.beginTransaction();
+
+			int count = 0;
+			for (PlayerProfile profile : profiles) {
+				session.update(profile);
+
+				// Send each batch to the database and stop hibernate holding on to them
+				if (++count % ProfileWriter.BATCH_SIZE == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+
+			session.getTransaction().commit();
+		}
+		catch (HibernateException e) {
+			log.error("Error saving " + profiles.size() + " profiles: " + e.getMessage());
+
+			if (session.getTransaction().isActive())
+				session.getTransaction().rollback();
 
-		session.getTransaction().commit();
+			return false;
+		}
 
 		if (log.isDebugEnabled())
-			log.debug("Saved profile: " + profile);
+			log.debug("Saved " + profiles.size() + " profiles");
+
+		return true;
+	}
+
+	// Writes any queued profiles then closes the connection
+	public void close() {
+		writer.close();
+		factory.close();
 	}
 }
@@ -0,0 +1,87 @@
+package com.game.server.db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A bounded cache which evicts the least recently used entry, and anything older than its time to live
+public class LRUCache<K, V> {
+
+	protected static class Entry<V> {
+		protected final V value;
+		protected final long expires;
+
+		protected Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	protected final int maxSize;
+	protected final long ttl;
+	protected final Map<K, Entry<V>> entries;
+	protected long hits;
+	protected long misses;
+
+	public LRUCache(final int maxSize, long ttl) {
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+
+		// Access ordered, so the eldest entry is the least recently used
+		entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return this.size() > maxSize;
+			}
+		};
+
+		hits = 0;
+		misses = 0;
+	}
+
+	public synchronized V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.expires < System.currentTimeMillis()) {
+			entries.remove(key);
+			entry = null;
+		}
+
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.value;
+	}
+
+	public synchronized void put(K key, V value) {
+		entries.put(key, new Entry<V>(value, System.currentTimeMillis() + ttl));
+	}
+
+	public synchronized void remove(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized double getHitRatio() {
+		if (hits + misses == 0)
+			return 0;
+
+		return (double) hits / (hits + misses);
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "cache[size = " + entries.size() + ", hits = " + hits + ", misses = " + misses + ", ratio = " + String.format("%.2f", this.getHitRatio()) + "]";
+	}
+}
@@ -0,0 +1,107 @@
+package com.game.server.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import com.game.common.model.Friend;
+import com.game.common.model.Hash;
+import com.game.common.model.PlayerProfile;
+
+// Keeps recently used profiles and friend lookups in memory, so reconnecting and adding friends don't hit the database
+public class ProfileCache {
+
+	public static final int MAX_PROFILES = 1000;
+	public static final long PROFILE_TTL = 10 * 60 * 1000; // in ms
+	public static final int MAX_FRIENDS = 10000;
+	public static final long FRIEND_TTL = 30 * 60 * 1000; // in ms
+
+	// Profiles are kept serialized, so every hit hands out a fresh copy nobody else is modifying
+	protected final LRUCache<Hash, byte[]> profiles;
+	protected final LRUCache<String, Friend> friends;
+
+	public ProfileCache() {
+		profiles = new LRUCache<Hash, byte[]>(MAX_PROFILES, PROFILE_TTL);
+		friends = new LRUCache<String, Friend>(MAX_FRIENDS, FRIEND_TTL);
+	}
+
+	// Returns a copy of the cached profile, or null if it isn't cached or the password doesn't match
+	public PlayerProfile getProfile(Hash id, Hash password) {
+		byte[] bytes = profiles.get(id);
+		if (bytes == null)
+			return null;
+
+		PlayerProfile profile = ProfileCache.deserialize(bytes);
+		if (!profile.hasPassword(password))
+			return null;
+
+		return profile;
+	}
+
+	public void putProfile(PlayerProfile profile) {
+		profiles.put(profile.id, ProfileCache.serialize(profile));
+	}
+
+	public void putProfile(Hash id, byte[] bytes) {
+		profiles.put(id, bytes);
+	}
+
+	public void removeProfile(Hash id) {
+		profiles.remove(id);
+	}
+
+	public Friend getFriend(String username) {
+		Friend friend = friends.get(username);
+		if (friend == null)
+			return null;
+
+		// Hand out a copy, as the online status is set by whoever asked
+		return new Friend(friend.getID(), friend.getUsername(), false);
+	}
+
+	public void putFriend(Friend friend) {
+		friends.put(friend.getUsername(), new Friend(friend.getID(), friend.getUsername(), false));
+	}
+
+	public void resetStatistics() {
+		profiles.resetStatistics();
+		friends.resetStatistics();
+	}
+
+	@Override
+	public String toString() {
+		return "caches[profiles = " + profiles + ", friends = " + friends + "]";
+	}
+
+	public static byte[] serialize(PlayerProfile profile) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(profile);
+			out.close();
+
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Unable to serialize profile " + profile + ": " + e.getMessage());
+		}
+	}
+
+	public static PlayerProfile deserialize(byte[] bytes) {
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			PlayerProfile profile = (PlayerProfile) in.readObject();
+			in.close();
+
+			return profile;
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Unable to deserialize profile: " + e.getMessage());
+		}
+		catch (ClassNotFoundException e) {
+			throw new RuntimeException("Unable to deserialize profile: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package com.game.server.db;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.model.Hash;
+import com.game.common.model.PlayerProfile;
+import com.game.common.util.Statistic;
+
+// Writes profiles to the database in the background, so a slow commit never holds up the world
+public class ProfileWriter {
+	private static final Logger log = LoggerFactory.getLogger(ProfileWriter.class);
+
+	public static final int BATCH_SIZE = 50;
+	public static final long RETRY_DELAY = 5000; // in ms
+	public static final long CLOSE_TIMEOUT = 30000; // in ms
+
+	protected static class PendingSave {
+		protected PlayerProfile profile;
+		protected final long queued;
+
+		protected PendingSave(PlayerProfile profile, long queued) {
+			this.profile = profile;
+			this.queued = queued;
+		}
+	}
+
+	protected final Database db;
+	protected final ScheduledExecutorService executor;
+
+	// Saves waiting to be written, only the latest snapshot of each profile is kept
+	protected final Map<Hash, PendingSave> pending;
+	// Saves currently being written
+	protected final Set<Hash> writing;
+	protected boolean scheduled;
+	protected boolean closed;
+
+	protected final Statistic latency;
+	protected final Statistic batchTime;
+	protected long coalesced;
+	protected long failed;
+
+	public ProfileWriter(Database db) {
+		this.db = db;
+
+		// A single writer keeps the saves for a profile in order
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "profile-writer");
+			}
+		});
+
+		pending = new LinkedHashMap<Hash, PendingSave>();
+		writing = new HashSet<Hash>();
+		scheduled = false;
+		closed = false;
+
+		latency = new Statistic();
+		batchTime = new Statistic();
+		coalesced = 0;
+		failed = 0;
+	}
+
+	// NOTE: The profile is copied straight away, so it must not be modified by another thread while this is called
+	public void queue(PlayerProfile profile) {
+		// Take a deep copy, so the world can carry on changing the profile while it's written
+		byte[] bytes = ProfileCache.serialize(profile);
+		PlayerProfile snapshot = ProfileCache.deserialize(bytes);
+
+		// This is now the latest version of the profile, so anyone logging back in should get it
+		db.getCache().putProfile(snapshot.id, bytes);
+
+		// Everything up to now will be saved, so the live profile is clean again
+		profile.setDirty(false);
+
+		synchronized (pending) {
+			if (closed) {
+				log.error("Attempted to save profile after the writer was closed: " + profile);
+				return;
+			}
+
+			// If there's already a save waiting for this profile, replace it but keep its place in the queue
+			PendingSave save = pending.get(snapshot.id);
+			if (save != null) {
+				save.profile = snapshot;
+				coalesced++;
+			}
+			else {
+				pending.put(snapshot.id, new PendingSave(snapshot, System.currentTimeMillis()));
+			}
+
+			this.schedule(0);
+		}
+	}
+
+	public boolean isPending(Hash id) {
+		synchronized (pending) {
+			return pending.containsKey(id) || writing.contains(id);
+		}
+	}
+
+	// Blocks until any queued save of the given profile has been written, so it can safely be read back
+	public void flush(Hash id) {
+		if (!this.isPending(id))
+			return;
+
+		// The writer is single threaded, so once this has run any earlier writes are done too
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					ProfileWriter.this.drain();
+				}
+			}).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			log.error("Error flushing profile " + id + ": " + e.getCause().getMessage());
+		}
+	}
+
+	// Writes everything still queued then stops the writer
+	public void close() {
+		synchronized (pending) {
+			if (closed)
+				return;
+
+			closed = true;
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ProfileWriter.this.drain();
+			}
+		});
+
+		executor.shutdown();
+
+		try {
+			if (!executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS))
+				log.error("Timed out writing profiles, " + this.getQueueDepth() + " were not saved");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// NOTE: Must be called while holding the pending lock
+	private void schedule(long delay) {
+		if (scheduled || executor.isShutdown())
+			return;
+
+		scheduled = true;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (pending) {
+					scheduled = false;
+				}
+
+				ProfileWriter.this.drain();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void drain() {
+		while (true) {
+			List<PendingSave> batch = new ArrayList<PendingSave>(BATCH_SIZE);
+
+			synchronized (pending) {
+				// Take the oldest saves off the queue
+				for (Iterator<PendingSave> it = pending.values().iterator();it.hasNext() && batch.size() < BATCH_SIZE;) {
+					PendingSave save = it.next();
+					it.remove();
+
+					writing.add(save.profile.id);
+					batch.add(save);
+				}
+			}
+
+			if (batch.isEmpty())
+				return;
+
+			List<PlayerProfile> profiles = new ArrayList<PlayerProfile>(batch.size());
+			for (PendingSave save : batch)
+				profiles.add(save.profile);
+
+			long start = System.currentTimeMillis();
+			boolean success = db.write(profiles);
+			long now = System.currentTimeMillis();
+
+			synchronized (pending) {
+				for (PendingSave save : batch)
+					writing.remove(save.profile.id);
+
+				if (success) {
+					batchTime.add(now - start);
+					for (PendingSave save : batch)
+						latency.add(now - save.queued);
+
+					continue;
+				}
+
+				// Put the failed saves back, unless a newer snapshot has been queued in the mean time
+				failed += batch.size();
+				for (PendingSave save : batch) {
+					if (!pending.containsKey(save.profile.id))
+						pending.put(save.profile.id, save);
+				}
+
+				// When closing we only get one attempt
+				if (closed) {
+					log.error("Failed to write " + pending.size() + " profiles while closing");
+					return;
+				}
+
+				this.schedule(RETRY_DELAY);
+				return;
+			}
+		}
+	}
+
+	public int getQueueDepth() {
+		synchronized (pending) {
+			return pending.size() + writing.size();
+		}
+	}
+
+	// Time from a profile being queued to it being committed
+	public Statistic getLatency() {
+		return latency;
+	}
+
+	public Statistic getBatchTime() {
+		return batchTime;
+	}
+
+	public void resetStatistics() {
+		latency.reset();
+		batchTime.reset();
+
+		synchronized (pending) {
+			coalesced = 0;
+			failed = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (pending) {
+			return "writer[queued = " + this.getQueueDepth() + ", written = " + latency.getCount() + ", coalesced = " + coalesced + ", failed = " + failed + ", latency = " + String.format("%.2fms", latency.getMean()) + " (max " + latency.getMax() + "ms), batch = " + String.format("%.2fms", batchTime.getMean()) + "]";
+		}
+	}
+}
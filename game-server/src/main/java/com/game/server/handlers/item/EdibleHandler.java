@@ -15,6 +15,7 @@ public class EdibleHandler implements ItemHandler {
 		String message = "You eat the " + item.getName().toLowerCase();
 
 		player.getInventory().remove(index);
+		player.markDirty();
 		player.sendInventoryRemove(index);
 
 		// Our health isn't full so increase it
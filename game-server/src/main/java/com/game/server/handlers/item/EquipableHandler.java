@@ -18,6 +18,7 @@ public class EquipableHandler implements ItemHandler {
 
 		item.setEquiped(equiped);
 		player.sendInventoryUpdate(index, item);
+		player.markDirty();
 	}
 
 	private void removeEquipedItem(Player player, Item.Definition.Equipable position) {
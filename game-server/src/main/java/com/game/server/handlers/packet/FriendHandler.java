@@ -29,6 +29,7 @@ public class FriendHandler implements PacketHandler {
 
 			// Add the friend
 			friendList.add(friend);
+			player.markDirty();
 
 			// Tell the client to actually perform the add
 			player.sendAddFriend(friend);
@@ -43,6 +44,8 @@ public class FriendHandler implements PacketHandler {
 			if (friend == null)
 				return;
 
+			player.markDirty();
+
 			// Tell the client to actually perform the removal
 			player.sendRemoveFriend(friend);
 
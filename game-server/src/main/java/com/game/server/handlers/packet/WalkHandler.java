@@ -2,6 +2,7 @@ package com.game.server.handlers.packet;
 
 import com.game.common.codec.Packet;
 import com.game.common.model.Path;
+import com.game.common.model.Point;
 import com.game.server.Server;
 import com.game.server.WorldManager;
 import com.game.server.handlers.PacketHandler;
@@ -11,9 +12,12 @@ public class WalkHandler implements PacketHandler {
 
 	@Override
 	public void handlePacket(Server server, WorldManager world, Player player, Packet packet) throws Exception {
-		Path path = packet.getPath();
-		// Check the path actually has some steps
-		if (!path.hasNext())
+		Point target = packet.getPoint();
+
+		// Find our own way there, rather than trusting a path from the client
+		Path path = world.getPathCache().findPath(player.getLocation(), target);
+		// There's no way there, or it's too far away
+		if (path == null)
 			return;
 
 		// Set this player walking along the path
@@ -0,0 +1,93 @@
+package com.game.server.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.game.common.model.Path;
+import com.game.common.model.Point;
+import com.game.common.util.Statistic;
+import com.game.server.db.LRUCache;
+
+// Finds paths for players, remembering recent ones as players tend to walk the same routes over and over
+public class PathCache {
+
+	public static final int MAX_SIZE = 10000;
+	public static final long TTL = 10 * 60 * 1000; // in ms
+	public static final int MAX_PATH_LENGTH = 128; // anything longer is refused, so nobody can hold on to a huge path
+
+	protected static final Point[] NO_PATH = new Point[0];
+
+	protected final WorldMap map;
+	protected final LRUCache<Long, Point[]> paths;
+	protected final Statistic searchTime; // in microseconds
+	protected int refused;
+
+	public PathCache(WorldMap map) {
+		this.map = map;
+
+		paths = new LRUCache<Long, Point[]>(MAX_SIZE, TTL);
+		searchTime = new Statistic();
+		refused = 0;
+	}
+
+	// Both locations packed into one key, the map is never big enough to need more than 16 bits each
+	protected static long key(Point start, Point target) {
+		return ((long) (start.x & 0xffff) << 48) | ((long) (start.y & 0xffff) << 32) | ((long) (target.x & 0xffff) << 16) | (target.y & 0xffff);
+	}
+
+	// Returns a new path from start to target, or null if there's no way there (or it's too far away)
+	public Path findPath(Point start, Point target) {
+		// Don't bother searching (or caching) anything outside the map or out of range
+		if (target.x < 0 || target.x >= map.getWidth() || target.y < 0 || target.y >= map.getHeight() || Math.abs(target.x - start.x) >= map.getSectorSize() || Math.abs(target.y - start.y) >= map.getSectorSize()) {
+			synchronized (this) {
+				refused++;
+			}
+
+			return null;
+		}
+
+		Long key = PathCache.key(start, target);
+
+		Point[] steps = paths.get(key);
+		if (steps == null) {
+			long begin = System.nanoTime();
+			Path path = map.generatePath(start, target);
+			searchTime.add((System.nanoTime() - begin) / 1000);
+
+			// Remember failures too, so asking for the same unreachable place again is cheap
+			if (path == null || path.length() > MAX_PATH_LENGTH) {
+				steps = NO_PATH;
+			}
+			else {
+				steps = new Point[path.length()];
+
+				int i = 0;
+				for (Point step : path)
+					steps[i++] = step;
+			}
+
+			paths.put(key, steps);
+		}
+
+		if (steps.length == 0)
+			return null;
+
+		// The points themselves are shared between paths, which is fine since walking only ever copies them
+		Deque<Point> copy = new ArrayDeque<Point>(steps.length);
+		for (Point step : steps)
+			copy.addLast(step);
+
+		return new Path(copy);
+	}
+
+	public synchronized void resetStatistics() {
+		paths.resetStatistics();
+		searchTime.reset();
+		refused = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "paths[" + paths + ", searches = " + searchTime.getCount() + ", search = " + String.format("%.2fus", searchTime.getMean()) + " (max " + searchTime.getMax() + "us), refused = " + refused + "]";
+	}
+}
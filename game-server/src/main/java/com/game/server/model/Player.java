@@ -1,7 +1,9 @@
 package com.game.server.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -11,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.game.common.codec.Packet;
+import com.game.common.codec.PacketBatch;
 import com.game.common.codec.PacketBuilder;
 import com.game.common.model.Entity;
 import com.game.common.model.Friend;
@@ -23,6 +26,7 @@ import com.game.common.model.Point;
 import com.game.common.model.Stat;
 import com.game.common.util.EntityList;
 import com.game.common.util.FriendList;
+import com.game.common.util.SlotTable;
 import com.game.common.util.StatList;
 import com.game.server.Server;
 import com.game.server.WorldManager;
@@ -31,13 +35,19 @@ public class Player extends Entity implements Observer {
 	private static final Logger log = LoggerFactory.getLogger(Player.class);
 
 	public static final int VIEW_DISTANCE = 64;
+	public static final long AUTOSAVE_INTERVAL = 5 * 60 * 1000; // in ms
 
 	protected final Server server;
 	protected final WorldManager world;
 	protected final IoSession session;
 	protected final PlayerProfile profile;
 	protected final EntityList<Player> knownPlayers;
+	protected final SlotTable<Player> knownSlots;
+	protected final Point lastLocation;
+	protected PacketBatch outgoing;
 	protected Path path;
+	protected Point nextStep;
+	protected long nextAutosave;
 
 	public Player(Server server, IoSession session, PlayerProfile profile) {
 		this.server = server;
@@ -48,8 +58,17 @@ public class Player extends Entity implements Observer {
 			stat.addObserver(this);
 
 		path = null;
+		nextStep = null;
+		nextAutosave = 0;
 		world = server.getWorldManager();
 		knownPlayers = new EntityList<Player>();
+		outgoing = new PacketBatch();
+
+		// Each known player gets a slot the client refers to them by, we are always slot 0
+		knownSlots = new SlotTable<Player>(Packet.MAX_PLAYER_SLOTS);
+		knownSlots.put(0, this);
+
+		lastLocation = new Point(profile.location.x, profile.location.y);
 
 		// Once a client is logged in, we can relax the idle time to 60 seconds
 		session.getConfig().setIdleTime(IdleStatus.READER_IDLE, 60);
@@ -59,8 +78,11 @@ public class Player extends Entity implements Observer {
 		this.path = path;
 	}
 
-	public void update(long now, EntityList<Player> allPlayers) {
-		// If we have a path set, move to the next step along
+	// NOTE: May be called in parallel with other players, so must only modify our own state
+	public void updatePath(long now) {
+		nextStep = null;
+
+		// If we have a path set, find the next step along
 		if (path != null) {
 			Point step = path.removeNext();
 			if (!path.hasNext())
@@ -68,7 +90,7 @@ public class Player extends Entity implements Observer {
 
 			// The next step is next to us and a valid step
 			if (world.getMap().isValidStep(profile.location, step)) {
-				this.setLocation(step);
+				nextStep = step;
 			}
 			// The next step isn't next to us, we have an invalid path!
 			else {
@@ -77,7 +99,18 @@ public class Player extends Entity implements Observer {
 				path = null;
 			}
 		}
+	}
+
+	public void updateLocation(long now) {
+		// If we found a step to take, move there
+		if (nextStep != null) {
+			this.setLocation(nextStep);
+			nextStep = null;
+		}
+	}
 
+	// NOTE: May be called in parallel with other players, so must only modify our own state
+	public void update(long now, EntityList<Player> allPlayers) {
 		// For each player we know about, check they are still within our view area and logged in
 		for (Iterator<Player> it = knownPlayers.iterator();it.hasNext();) {
 			Player player = it.next();
@@ -87,22 +120,22 @@ public class Player extends Entity implements Observer {
 		}
 
 		// For each player in our view area, check they are in our known players list
-		for (Player player : allPlayers) {
-			double distance = this.getLocation().distanceTo(player.getLocation());
-			if (distance > VIEW_DISTANCE)
+		for (Player player : world.getMap().getPlayers(this.getLocation(), VIEW_DISTANCE)) {
+			// If we've run out of slots then ignore anyone new until someone leaves
+			if (knownPlayers.size() >= Packet.MAX_PLAYER_SLOTS && !knownPlayers.contains(player))
 				continue;
 
 			knownPlayers.add(player);
 		}
 
+		// Alert this player of removed players, first so their slots can be reused
+		if (knownPlayers.hasRemovedEntities())
+			this.sendRemovePlayers(knownPlayers.removedEntities());
+
 		// Alert this player of new players
 		if (knownPlayers.hasNewEntities())
 			this.sendAddPlayers(knownPlayers.newEntities());
 
-		// Alert this player of removed players
-		if (knownPlayers.hasRemovedEntities())
-			this.sendRemovePlayers(knownPlayers.removedEntities());
-
 		// Alert this player of updated players
 		if (knownPlayers.hasUpdatedEntities())
 			this.sendUpdatePlayers(knownPlayers.updatedEntities());
@@ -111,6 +144,31 @@ public class Player extends Entity implements Observer {
 		knownPlayers.reset();
 	}
 
+	// Called once every player has been updated, so next tick's movement is sent relative to where we are now
+	public void commitLocation() {
+		lastLocation.set(profile.location);
+	}
+
+	// Saves our profile if it has changed, at most once every AUTOSAVE_INTERVAL
+	public void autosave(long now) {
+		// Spread the first autosave over the interval, so players who logged in together don't save together
+		if (nextAutosave == 0)
+			nextAutosave = now + (long) (Math.random() * AUTOSAVE_INTERVAL);
+
+		if (now < nextAutosave)
+			return;
+
+		nextAutosave = now + AUTOSAVE_INTERVAL;
+
+		if (profile.isDirty())
+			server.getDatabase().save(profile);
+	}
+
+	// Marks our profile as needing to be saved
+	public void markDirty() {
+		profile.setDirty(true);
+	}
+
 	public Collection<Player> getKnownPlayers() {
 		return knownPlayers.allEntities();
 	}
@@ -129,15 +187,18 @@ public class Player extends Entity implements Observer {
 
 	public void onSessionStarted() {
 		log.info("Client connected: " + this);
-		WorldTile tile = world.getMap().getTile(profile.location);
-		if (tile == null) {
+		WorldSector sector = world.getMap().getSector(profile.location);
+		if (sector == null) {
 			log.error("Attempted to add client to non-existant tile: " + this);
 
 			session.close(false);
 			return;
 		}
 
-		tile.add(this);
+		if (!world.getMap().getCollisionMap().isWalkable(profile.location.x, profile.location.y))
+			log.warn("Added player to a non-walkable tile: " + this);
+
+		sector.add(this);
 	}
 
 	@Override
@@ -147,26 +208,33 @@ public class Player extends Entity implements Observer {
 
 	@Override
 	public void setLocation(Point p) {
-		// If we haven't moved then don't bother updating tiles
+		// If we haven't moved then don't bother updating sectors
 		if (profile.location.equals(p))
 			return;
 
-		// Remove ourselves from the old tile
-		world.getMap().getTile(profile.location).remove(this);
+		WorldMap map = world.getMap();
 
-		WorldTile tile = world.getMap().getTile(p);
-		if (tile == null) {
+		WorldSector oldSector = map.getSector(profile.location);
+		WorldSector newSector = map.getSector(p);
+		if (newSector == null) {
 			log.error("Attempted to add client to non-existant tile: " + this);
 
 			session.close(false);
 			return;
 		}
 
+		if (!map.getCollisionMap().isWalkable(p.x, p.y))
+			log.warn("Added player to a non-walkable tile: " + this);
+
 		// Update our location
 		profile.location.set(p);
+		this.markDirty();
 
-		// Add ourselves to the new tile
-		tile.add(this);
+		// If we have crossed into a new sector, move ourselves over
+		if (oldSector != newSector) {
+			oldSector.remove(this);
+			newSector.add(this);
+		}
 
 		// Mark us as changed
 		super.setChanged();
@@ -182,13 +250,22 @@ public class Player extends Entity implements Observer {
 		return profile.id;
 	}
 
+	// NOTE: Packets are only queued here, they are sent together when the server calls flush()
 	public void write(PacketBuilder packet) {
-		session.write(packet);
+		outgoing.add(packet);
+	}
+
+	public void flush() {
+		if (outgoing.isEmpty())
+			return;
+
+		session.write(outgoing);
+		outgoing = new PacketBatch();
 	}
 
 	public void onSessionEnded() {
 		// Remove ourselves from the map
-		world.getMap().getTile(profile.location).remove(this);
+		world.getMap().getSector(profile.location).remove(this);
 
 		// Update our last session time and save our profile
 		profile.lastSession.setTime(System.currentTimeMillis());
@@ -291,6 +368,7 @@ public class Player extends Entity implements Observer {
 			if (player.equals(this))
 				continue;
 
+			packet.putShort((short) knownSlots.add(player));
 			packet.putHash(player.getID());
 			packet.putString(player.getUsername());
 			packet.putPoint(player.getLocation());
@@ -316,24 +394,41 @@ public class Player extends Entity implements Observer {
 			if (player.equals(this))
 				continue;
 
-			packet.putHash(player.getID());
+			int slot = knownSlots.indexOf(player);
+			knownSlots.remove(slot);
+
+			packet.putShort((short) slot);
 		}
 
 		this.write(packet);
 	}
 
 	public void sendUpdatePlayers(Collection<Player> players) {
-		int playerCount = players.size();
+		// Players who were just added or removed have already been sent their location, or don't need it
+		List<Player> updated = new ArrayList<Player>(players.size());
+		for (Player player : players) {
+			if (knownSlots.indexOf(player) == -1 || knownPlayers.newEntities().contains(player))
+				continue;
+
+			updated.add(player);
+		}
+
 		// If there's no players then we have nothing to send
-		if (playerCount == 0)
+		if (updated.isEmpty())
 			return;
 
 		PacketBuilder packet = new PacketBuilder(Packet.Type.PLAYERS_UPDATE_RESPONSE);
 
-		packet.putShort((short) playerCount);
-		for (Player player : players) {
-			packet.putHash(player.getID());
-			packet.putPoint(player.getLocation());
+		packet.putShort((short) updated.size());
+		for (Player player : updated) {
+			// Most updates are a single step, so send the direction rather than the whole location
+			int direction = player.lastLocation.directionTo(player.getLocation());
+			if (direction == -1)
+				direction = Packet.ABSOLUTE_DIRECTION;
+
+			packet.putShort((short) (knownSlots.indexOf(player) << 4 | direction));
+			if (direction == Packet.ABSOLUTE_DIRECTION)
+				packet.putPoint(player.getLocation());
 		}
 
 		this.write(packet);
@@ -370,6 +465,8 @@ public class Player extends Entity implements Observer {
 	public void update(Observable o, Object arg) {
 		// A stat was updated, send the update to the client
 		if (o instanceof Stat) {
+			this.markDirty();
+
 			Stat stat = (Stat) o;
 			boolean levelNotification = (Boolean) arg;
 			if (levelNotification)
@@ -1,14 +1,16 @@
 package com.game.server.model;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.util.zip.GZIPInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.game.common.model.CollisionMap;
 import com.game.common.model.Map;
+import com.game.common.model.MapFile;
 import com.game.common.model.Point;
 
 public class WorldMap extends Map {
@@ -23,36 +25,47 @@ public class WorldMap extends Map {
 		}
 
 		try {
-			DataInputStream in = new DataInputStream(new GZIPInputStream (path.openStream()));
+			MapFile file = MapFile.open(path);
 
-			// Confirm we are reading the correct map file
-			if (in.readInt() != Map.MAGIC_NUMBER) {
-				log.error("Attempted to read invalid map file.");
-				System.exit(1); // fatal error
-				return null;
-			}
+			int width = file.getWidth();			// width in sectors
+			int height = file.getHeight();			// height in sectors
+			int sectorSize = file.getSectorSize();	// tiles (squared) per sector
+
+			int mapWidth = width * sectorSize;
+			int mapHeight = height * sectorSize;
 
-			int width = in.readInt();		// width in sectors
-			int height = in.readInt();		// height in sectors
-			int sectorSize = in.readInt();	// tiles (squared) per sector
+			byte[] elevation = new byte[mapWidth * mapHeight];
+			byte[] texture = new byte[mapWidth * mapHeight];
+			byte[] overlay = new byte[mapWidth * mapHeight];
+			byte[] hWall = new byte[mapWidth * mapHeight];
+			byte[] vWall = new byte[mapWidth * mapHeight];
 
-			WorldTile[][] tiles = new WorldTile[width * sectorSize][height * sectorSize];
+			// Each sector is read in one go then split out into the planes
+			byte[] data = new byte[file.getSectorLength()];
 
 			// for each sector
 			for (int y = 0;y < height;y++) {
 				for (int x = 0;x < width;x++) {
+					file.readSector(x, y, data);
+
+					int offset = 0;
+
 					// for each tile in this sector
 					for (int ty = 0;ty < sectorSize;ty++) {
 						for (int tx = 0;tx < sectorSize;tx++) {
-							tiles[tx + (x * sectorSize)][ty + (y * sectorSize)] = new WorldTile(in);
+							int index = (ty + (y * sectorSize)) * mapWidth + tx + (x * sectorSize);
+
+							elevation[index] = data[offset++];
+							texture[index] = data[offset++];
+							overlay[index] = data[offset++];
+							hWall[index] = data[offset++];
+							vWall[index] = data[offset++];
 						}
 					}
 				}
 			}
 
-			in.close();
-
-			return new WorldMap(width, height, sectorSize, tiles);
+			return new WorldMap(width, height, sectorSize, elevation, texture, overlay, hWall, vWall);
 		}
 		catch (IOException ioe) {
 			log.error("Error loading map: " + ioe.getMessage());
@@ -61,24 +74,82 @@ public class WorldMap extends Map {
 		}
 	}
 
-	protected final WorldTile[][] tiles;
+	// One byte per tile in each plane, indexed by y * width + x, rather than an object per tile
+	protected final byte[] elevation;
+	protected final byte[] texture;
+	protected final byte[] overlay;
+	protected final byte[] hWall;
+	protected final byte[] vWall;
+	protected final WorldSector[][] sectors;
 
-	public WorldMap(int width, int height, int sectorSize, WorldTile[][] tiles) {
+	public WorldMap(int width, int height, int sectorSize, byte[] elevation, byte[] texture, byte[] overlay, byte[] hWall, byte[] vWall) {
 		super (width, height, sectorSize);
 
-		this.tiles = tiles;
+		this.elevation = elevation;
+		this.texture = texture;
+		this.overlay = overlay;
+		this.hWall = hWall;
+		this.vWall = vWall;
+
+		// Players are bucketed by sector, so view queries only need to look at nearby sectors
+		sectors = new WorldSector[width][height];
+		for (int y = 0;y < height;y++)
+			for (int x = 0;x < width;x++)
+				sectors[x][y] = new WorldSector(new Point(x * sectorSize, y * sectorSize));
+
+		// The walls never change, so steps can always be checked against a snapshot of them
+		collision = CollisionMap.build(this, 0, 0, super.getWidth(), super.getHeight());
 
 		if (log.isDebugEnabled())
 			log.debug("Loaded WorldMap: " + this);
 	}
 
+	// Returns a new copy of the tile each time, anything which gets called a lot should use the collision map instead
 	@Override
 	public WorldTile getTile(int x, int y) {
-		return tiles[x][y];
+		if (x < 0 || x >= super.getWidth() || y < 0 || y >= super.getHeight())
+			return null;
+
+		int index = y * super.getWidth() + x;
+		return new WorldTile(elevation[index], texture[index], overlay[index], hWall[index], vWall[index]);
 	}
 
 	@Override
 	public WorldTile getTile(Point p) {
 		return this.getTile(p.x, p.y);
 	}
+
+	public WorldSector getSector(int x, int y) {
+		if (x < 0 || x >= super.getWidth() || y < 0 || y >= super.getHeight())
+			return null;
+
+		return sectors[x / super.sectorSize][y / super.sectorSize];
+	}
+
+	public WorldSector getSector(Point p) {
+		return this.getSector(p.x, p.y);
+	}
+
+	public List<Player> getPlayers(Point location, int radius) {
+		List<Player> players = new ArrayList<Player>();
+
+		// Calculate the range of sectors which overlap our area
+		int startX = Math.max(location.x - radius, 0) / super.sectorSize;
+		int startY = Math.max(location.y - radius, 0) / super.sectorSize;
+		int endX = Math.min(location.x + radius, super.getWidth() - 1) / super.sectorSize;
+		int endY = Math.min(location.y + radius, super.getHeight() - 1) / super.sectorSize;
+
+		for (int y = startY;y <= endY;y++) {
+			for (int x = startX;x <= endX;x++) {
+				for (Player player : sectors[x][y].getPlayers()) {
+					if (location.distanceTo(player.getLocation()) > radius)
+						continue;
+
+					players.add(player);
+				}
+			}
+		}
+
+		return players;
+	}
 }
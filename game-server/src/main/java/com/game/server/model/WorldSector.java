@@ -0,0 +1,40 @@
+package com.game.server.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.game.common.model.Point;
+
+public class WorldSector {
+
+	public final Point offset;
+	protected final Set<Player> players;
+
+	public WorldSector(Point offset) {
+		this.offset = offset;
+
+		players = new HashSet<Player>();
+	}
+
+	public void add(Player player) {
+		players.add(player);
+	}
+
+	public boolean contains(Player player) {
+		return players.contains(player);
+	}
+
+	public void remove(Player player) {
+		players.remove(player);
+	}
+
+	public Collection<Player> getPlayers() {
+		return players;
+	}
+
+	@Override
+	public String toString() {
+		return "sector[offset = " + offset + ", players = " + players.size() + "]";
+	}
+}
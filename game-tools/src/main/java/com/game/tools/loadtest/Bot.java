@@ -0,0 +1,258 @@
+package com.game.tools.loadtest;
+
+import java.security.PublicKey;
+import java.util.Random;
+
+import org.apache.mina.core.session.IoSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.codec.Packet;
+import com.game.common.codec.PacketBuilder;
+import com.game.common.model.Hash;
+import com.game.common.model.Path;
+import com.game.common.model.Point;
+import com.game.common.util.ISAACAlgorithm;
+import com.game.common.util.StatList;
+
+// A single simulated player, speaking the same protocol as the real client
+public class Bot {
+	private static final Logger log = LoggerFactory.getLogger(Bot.class);
+
+	public static final int PING_DELAY = 30000;
+	public static final int WALK_RADIUS = 16; // how far away a bot will pick somewhere to walk to
+	public static final int MAX_TARGET_ATTEMPTS = 10;
+
+	protected final LoadTest test;
+	protected final String username;
+	protected final Hash id;
+	protected final Hash password;
+
+	protected IoSession session;
+	protected boolean loggedIn;
+	protected long loginStarted;
+
+	protected Point location;
+	protected int itemCount;
+	protected long walkRequested;
+	protected long lastPing;
+
+	public Bot(LoadTest test, String username, String password) {
+		this.test = test;
+		this.username = username;
+
+		id = new Hash(username.toLowerCase()); // Clean the username and hash it to get the users ID
+		this.password = new Hash(id + password); // Salt the password and hash it
+
+		session = null;
+		loggedIn = false;
+		loginStarted = 0;
+
+		location = null;
+		itemCount = 0;
+		walkRequested = 0;
+		lastPing = 0;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public synchronized boolean isConnected() {
+		return session != null && session.isConnected();
+	}
+
+	public synchronized boolean isLoggedIn() {
+		return loggedIn && this.isConnected();
+	}
+
+	// Called once the connection is open, sends the login exactly as the client does
+	public synchronized void login(IoSession session, PublicKey publicKey, Random random) {
+		this.session = session;
+
+		session.setAttribute("bot", this);
+		loginStarted = System.currentTimeMillis();
+
+		PacketBuilder packet = new PacketBuilder(Packet.Type.LOGIN_SEND);
+
+		packet.putHash(id);
+		packet.putHash(password);
+
+		long encryptionSeed = random.nextLong();
+		packet.putLong(encryptionSeed);
+
+		long decryptionSeed = random.nextLong();
+		packet.putLong(decryptionSeed);
+
+		// Encrypt the login packet with the server's public key
+		packet.encrypt(publicKey);
+
+		session.write(packet);
+
+		// from now on we want to encrypt outgoing packets
+		session.setAttribute("encrypter", new ISAACAlgorithm(encryptionSeed));
+		session.setAttribute("decrypter", new ISAACAlgorithm(decryptionSeed));
+	}
+
+	public synchronized void disconnect() {
+		if (session != null)
+			session.close(true);
+	}
+
+	public synchronized void handlePacket(Packet packet) {
+		switch (packet.getType()) {
+			case LOGIN_RESPONSE:
+				this.handleLogin(packet);
+				break;
+
+			case LOGIN_QUEUE_RESPONSE:
+				if (log.isDebugEnabled())
+					log.debug(username + " is waiting to login at position " + packet.getInt());
+				break;
+
+			case PLAYERS_UPDATE_RESPONSE:
+				this.handlePlayersUpdate(packet);
+				break;
+
+			case INVENTORY_ADD_RESPONSE:
+				itemCount++;
+				break;
+
+			case INVENTORY_REMOVE_RESPONSE:
+				itemCount--;
+				break;
+
+			// Everything else is just traffic as far as a bot is concerned
+			default:
+				break;
+		}
+	}
+
+	private void handleLogin(Packet packet) {
+		if (!packet.getBoolean()) {
+			test.loginFailed(this, packet.getString());
+			session.close(false);
+			return;
+		}
+
+		packet.getHash();					// id
+		packet.getString();					// username
+		location = packet.getPoint();		// location
+
+		// inventory
+		itemCount = packet.getByte();
+		for (int i = 0;i < itemCount;i++)
+			packet.getItem();
+
+		// stats
+		for (int i = 0;i < StatList.NUM_STATS;i++)
+			packet.getStat();
+
+		// friends
+		int friendCount = packet.getShort();
+		for (int i = 0;i < friendCount;i++)
+			packet.getFriend();
+
+		packet.getDate();					// registered
+		packet.getDate();					// last session
+
+		loggedIn = true;
+		lastPing = System.currentTimeMillis();
+
+		test.loginSucceeded(this, lastPing - loginStarted);
+	}
+
+	private void handlePlayersUpdate(Packet packet) {
+		int count = packet.getShort();
+		for (int i = 0;i < count;i++) {
+			int header = packet.getShort() & 0xffff;
+			int slot = header >> 4;
+			int direction = header & Packet.ABSOLUTE_DIRECTION;
+
+			Point point = null;
+			if (direction == Packet.ABSOLUTE_DIRECTION)
+				point = packet.getPoint();
+
+			// We only keep track of ourselves, slot 0
+			if (slot != 0)
+				continue;
+
+			location = (point != null) ? point : location.step(direction);
+
+			// The first step after asking to walk shows how long the server took to act on it
+			if (walkRequested != 0) {
+				test.walkStarted(System.currentTimeMillis() - walkRequested);
+				walkRequested = 0;
+			}
+		}
+	}
+
+	// Decide what to do next, called every so often by the load test
+	public synchronized void tick(long now, Random random) {
+		if (!this.isLoggedIn())
+			return;
+
+		// Keep the connection alive
+		if (now - lastPing > PING_DELAY) {
+			lastPing = now;
+
+			session.write(new PacketBuilder(Packet.Type.PING_SEND));
+		}
+
+		int action = random.nextInt(100);
+		if (action < LoadTest.WALK_CHANCE)
+			this.walk(now, random);
+		else if (action < LoadTest.WALK_CHANCE + LoadTest.CHAT_CHANCE)
+			this.chat(random);
+		else if (action < LoadTest.WALK_CHANCE + LoadTest.CHAT_CHANCE + LoadTest.USE_CHANCE)
+			this.useItem(random);
+	}
+
+	private void walk(long now, Random random) {
+		BotMap map = test.getMap();
+
+		for (int i = 0;i < MAX_TARGET_ATTEMPTS;i++) {
+			Point target = new Point(location.x + random.nextInt(WALK_RADIUS * 2 + 1) - WALK_RADIUS, location.y + random.nextInt(WALK_RADIUS * 2 + 1) - WALK_RADIUS);
+			if (target.equals(location) || map.getTile(target) == null || !map.getTile(target).isWalkable())
+				continue;
+
+			Path path = map.generatePath(location, target);
+			if (path == null || !path.hasNext())
+				continue;
+
+			// Only send where we're going, the server finds its own way there
+			PacketBuilder packet = new PacketBuilder(Packet.Type.WALK_TO_SEND);
+			packet.putPoint(target);
+
+			session.write(packet);
+
+			// Only time the first request, if we're already walking the next step says nothing about this one
+			if (walkRequested == 0)
+				walkRequested = now;
+
+			return;
+		}
+	}
+
+	private void chat(Random random) {
+		PacketBuilder packet = new PacketBuilder(Packet.Type.CHAT_SEND);
+		packet.putString("Hello from " + username + " (" + random.nextInt(1000) + ")");
+
+		session.write(packet);
+	}
+
+	private void useItem(Random random) {
+		if (itemCount <= 0)
+			return;
+
+		PacketBuilder packet = new PacketBuilder(Packet.Type.USE_ITEM_SEND);
+		packet.putByte((byte) random.nextInt(itemCount));
+
+		session.write(packet);
+	}
+
+	@Override
+	public String toString() {
+		return "bot[username = " + username + ", location = " + location + ", loggedIn = " + loggedIn + "]";
+	}
+}
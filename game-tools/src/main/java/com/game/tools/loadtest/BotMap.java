@@ -0,0 +1,84 @@
+package com.game.tools.loadtest;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URL;
+
+import com.game.common.model.CollisionMap;
+import com.game.common.model.Map;
+import com.game.common.model.MapFile;
+import com.game.common.model.Point;
+import com.game.common.model.Tile;
+
+// Just enough of the world map for bots to find paths, without any of the client's graphics
+public class BotMap extends Map {
+
+	protected static class BotTile extends Tile {
+		public BotTile(DataInputStream in) throws IOException {
+			super (in);
+		}
+	}
+
+	public static BotMap load() {
+		URL path = Map.class.getResource("world.map");
+		if (path == null) {
+			// fatal error
+			throw new RuntimeException("Unable to find map resource");
+		}
+
+		try {
+			MapFile file = MapFile.open(path);
+
+			int width = file.getWidth();			// width in sectors
+			int height = file.getHeight();			// height in sectors
+			int sectorSize = file.getSectorSize();	// tiles (squared) per sector
+
+			BotTile[][] tiles = new BotTile[width * sectorSize][height * sectorSize];
+
+			// for each sector
+			for (int y = 0;y < height;y++) {
+				for (int x = 0;x < width;x++) {
+					DataInputStream in = file.openSector(x, y);
+
+					// for each tile in this sector
+					for (int ty = 0;ty < sectorSize;ty++) {
+						for (int tx = 0;tx < sectorSize;tx++) {
+							tiles[tx + (x * sectorSize)][ty + (y * sectorSize)] = new BotTile(in);
+						}
+					}
+
+					in.close();
+				}
+			}
+
+			return new BotMap(width, height, sectorSize, tiles);
+		}
+		catch (IOException e) {
+			// fatal error
+			throw new RuntimeException("Error loading map: " + e.getMessage());
+		}
+	}
+
+	protected final BotTile[][] tiles;
+
+	public BotMap(int width, int height, int sectorSize, BotTile[][] tiles) {
+		super (width, height, sectorSize);
+
+		this.tiles = tiles;
+
+		collision = CollisionMap.build(this, 0, 0, super.getWidth(), super.getHeight());
+	}
+
+	@Override
+	public Tile getTile(int x, int y) {
+		if (x < 0 || x >= super.getWidth() || y < 0 || y >= super.getHeight())
+			return null;
+
+		return tiles[x][y];
+	}
+
+	@Override
+	public Tile getTile(Point p) {
+		return this.getTile(p.x, p.y);
+	}
+}
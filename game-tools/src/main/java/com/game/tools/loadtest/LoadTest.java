@@ -0,0 +1,337 @@
+package com.game.tools.loadtest;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.mina.core.future.ConnectFuture;
+import org.apache.mina.core.future.IoFutureListener;
+import org.apache.mina.core.service.IoHandler;
+import org.apache.mina.core.service.IoServiceStatistics;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.transport.socket.nio.NioSocketConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.codec.Packet;
+import com.game.common.codec.PacketCodecFactory;
+import com.game.common.util.PersistenceManager;
+import com.game.common.util.Statistic;
+
+// Logs in a crowd of headless bots and has them walk, chat and use items, reporting how the server copes
+public class LoadTest implements IoHandler {
+	private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+	public static final String DEFAULT_HOST = "localhost";
+	public static final int DEFAULT_PORT = 36954;
+	public static final int DEFAULT_BOTS = 100;
+	public static final int DEFAULT_RATE = 50; // logins per second
+	public static final int DEFAULT_DURATION = 300; // in seconds
+	public static final String DEFAULT_PREFIX = "bot";
+	public static final String DEFAULT_PASSWORD = "password";
+
+	public static final int TICK_DELAY = 1000; // how often each bot decides what to do next
+	public static final int REPORT_DELAY = 5000;
+	public static final int WALK_CHANCE = 30; // chance (in %) of each action per tick
+	public static final int CHAT_CHANCE = 5;
+	public static final int USE_CHANCE = 2;
+
+	protected static final Options options;
+
+	static {
+		options = new Options();
+
+		options.addOption("h", "help", false, "Print this help.");
+		options.addOption("s", "server", true, "The server hostname, default " + DEFAULT_HOST + ".");
+		options.addOption("p", "port", true, "The server port, default " + DEFAULT_PORT + ".");
+		options.addOption("k", "key", true, "Path to the server's public key, default publickey.xml.");
+		options.addOption("n", "bots", true, "Number of bots to log in, default " + DEFAULT_BOTS + ".");
+		options.addOption("r", "rate", true, "Number of bots to log in per second, default " + DEFAULT_RATE + ".");
+		options.addOption("d", "duration", true, "How long to run for in seconds, default " + DEFAULT_DURATION + ".");
+		options.addOption("u", "prefix", true, "Bot username prefix, default '" + DEFAULT_PREFIX + "'.");
+		options.addOption("w", "password", true, "Password for every bot, default '" + DEFAULT_PASSWORD + "'.");
+	}
+
+	public static void main(String[] args) {
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine config = parser.parse(options, args);
+
+			if (config.hasOption("h")) {
+				HelpFormatter help = new HelpFormatter();
+				help.printHelp("java " + LoadTest.class.getSimpleName(), options);
+				return;
+			}
+
+			String hostname = config.getOptionValue("s", DEFAULT_HOST);
+			int port = Integer.parseInt(config.getOptionValue("p", String.valueOf(DEFAULT_PORT)));
+			int count = Integer.parseInt(config.getOptionValue("n", String.valueOf(DEFAULT_BOTS)));
+			int rate = Integer.parseInt(config.getOptionValue("r", String.valueOf(DEFAULT_RATE)));
+			int duration = Integer.parseInt(config.getOptionValue("d", String.valueOf(DEFAULT_DURATION)));
+			String prefix = config.getOptionValue("u", DEFAULT_PREFIX);
+			String password = config.getOptionValue("w", DEFAULT_PASSWORD);
+
+			File keyFile = new File(config.getOptionValue("k", "publickey.xml"));
+			PublicKey publicKey = (PublicKey) PersistenceManager.load(keyFile.toURI().toURL());
+			if (publicKey == null) {
+				log.error("Unable to load public key from: " + keyFile.getAbsolutePath());
+				return;
+			}
+
+			LoadTest test = new LoadTest(new InetSocketAddress(hostname, port), publicKey, BotMap.load());
+			test.run(count, rate, prefix, password, duration * 1000L);
+		}
+		catch (ParseException e) {
+			log.error("Error parsing command line options: " + e);
+		}
+		catch (NumberFormatException e) {
+			log.error("Invalid number: " + e.getMessage());
+		}
+		catch (MalformedURLException e) {
+			log.error("Invalid key path: " + e.getMessage());
+		}
+		catch (RuntimeException e) {
+			log.error(e.getMessage());
+		}
+	}
+
+	protected final InetSocketAddress address;
+	protected final PublicKey publicKey;
+	protected final BotMap map;
+	protected final NioSocketConnector connector;
+	protected final ScheduledExecutorService scheduler;
+	protected final Random random;
+	protected final List<Bot> bots;
+
+	protected final Statistic loginTime;
+	protected final Statistic walkTime;
+	protected final AtomicInteger loginsFailed;
+	protected final AtomicInteger connectsFailed;
+	protected final AtomicInteger disconnects;
+
+	// Totals as of the last report, so each report shows the rate since the one before
+	protected long lastReport;
+	protected long lastReadBytes, lastWrittenBytes, lastReadMessages, lastWrittenMessages, lastLogins;
+
+	public LoadTest(InetSocketAddress address, PublicKey publicKey, BotMap map) {
+		this.address = address;
+		this.publicKey = publicKey;
+		this.map = map;
+
+		connector = new NioSocketConnector();
+		connector.getFilterChain().addLast("codec", new ProtocolCodecFilter(new PacketCodecFactory()));
+		connector.setHandler(this);
+
+		scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+		random = new Random();
+		bots = new ArrayList<Bot>();
+
+		loginTime = new Statistic();
+		walkTime = new Statistic();
+		loginsFailed = new AtomicInteger();
+		connectsFailed = new AtomicInteger();
+		disconnects = new AtomicInteger();
+	}
+
+	public BotMap getMap() {
+		return map;
+	}
+
+	public void run(int count, int rate, String prefix, String password, long duration) {
+		log.info("Starting " + count + " bots against " + address.getHostName() + ":" + address.getPort() + " at " + rate + " logins/s");
+
+		long start = System.currentTimeMillis();
+		lastReport = start;
+
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				LoadTest.this.report();
+			}
+		}, REPORT_DELAY, REPORT_DELAY, TimeUnit.MILLISECONDS);
+
+		// Ramp the bots up at the given rate, rather than hitting the server with everyone at once
+		long loginDelay = Math.max(1, 1000 / Math.max(1, rate));
+		for (int i = 0;i < count;i++) {
+			final Bot bot = new Bot(this, prefix + i, password);
+			synchronized (bots) {
+				bots.add(bot);
+			}
+
+			this.connect(bot);
+
+			// Each bot acts on its own schedule, spread across the tick so they don't all act at once
+			scheduler.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						bot.tick(System.currentTimeMillis(), random);
+					}
+					catch (RuntimeException e) {
+						log.warn("Error updating " + bot.getUsername() + ": " + e.getMessage());
+					}
+				}
+			}, random.nextInt(TICK_DELAY), TICK_DELAY, TimeUnit.MILLISECONDS);
+
+			try {
+				Thread.sleep(loginDelay);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		long remaining = duration - (System.currentTimeMillis() - start);
+		if (remaining > 0) {
+			try {
+				Thread.sleep(remaining);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		this.report();
+		this.stop();
+	}
+
+	protected void connect(final Bot bot) {
+		ConnectFuture future = connector.connect(address);
+		future.addListener(new IoFutureListener<ConnectFuture>() {
+			@Override
+			public void operationComplete(ConnectFuture future) {
+				if (!future.isConnected()) {
+					connectsFailed.incrementAndGet();
+					log.warn("Failed to connect " + bot.getUsername() + " to: " + address.getHostName() + ":" + address.getPort());
+					return;
+				}
+
+				bot.login(future.getSession(), publicKey, random);
+			}
+		});
+	}
+
+	public void stop() {
+		scheduler.shutdownNow();
+
+		synchronized (bots) {
+			for (Bot bot : bots)
+				bot.disconnect();
+		}
+
+		connector.dispose();
+	}
+
+	public void loginSucceeded(Bot bot, long time) {
+		loginTime.add(time);
+	}
+
+	public void loginFailed(Bot bot, String message) {
+		loginsFailed.incrementAndGet();
+
+		if (log.isDebugEnabled())
+			log.debug("Login failed for " + bot.getUsername() + ": " + message);
+	}
+
+	// Time from asking to walk until the server moved us, roughly how long the server takes to get round to a request
+	public void walkStarted(long time) {
+		walkTime.add(time);
+	}
+
+	protected synchronized void report() {
+		long now = System.currentTimeMillis();
+		double seconds = Math.max(1, now - lastReport) / 1000.0;
+		lastReport = now;
+
+		IoServiceStatistics stats = connector.getStatistics();
+		stats.updateThroughput(now);
+
+		long readBytes = stats.getReadBytes();
+		long writtenBytes = stats.getWrittenBytes();
+		long readMessages = stats.getReadMessages();
+		long writtenMessages = stats.getWrittenMessages();
+		long logins = loginTime.getCount();
+
+		int connected = 0;
+		int online = 0;
+		synchronized (bots) {
+			for (Bot bot : bots) {
+				if (bot.isConnected())
+					connected++;
+				if (bot.isLoggedIn())
+					online++;
+			}
+		}
+
+		log.info("bots[connected = " + connected + ", online = " + online + ", failed = " + loginsFailed.get() + ", unreachable = " + connectsFailed.get() + ", dropped = " + disconnects.get() + "]");
+		log.info("logins[rate = " + String.format("%.1f/s", (logins - lastLogins) / seconds) + ", time = " + String.format("%.2fms", loginTime.getMean()) + " (max " + loginTime.getMax() + "ms)], walk[delay = " + String.format("%.2fms", walkTime.getMean()) + " (max " + walkTime.getMax() + "ms)]");
+		log.info("traffic[in = " + String.format("%.1f packets/s", (readMessages - lastReadMessages) / seconds) + ", " + String.format("%.1f KB/s", (readBytes - lastReadBytes) / seconds / 1024) + ", out = " + String.format("%.1f packets/s", (writtenMessages - lastWrittenMessages) / seconds) + ", " + String.format("%.1f KB/s", (writtenBytes - lastWrittenBytes) / seconds / 1024) + "]");
+
+		lastReadBytes = readBytes;
+		lastWrittenBytes = writtenBytes;
+		lastReadMessages = readMessages;
+		lastWrittenMessages = writtenMessages;
+		lastLogins = logins;
+
+		// Each report covers just the time since the last
+		walkTime.reset();
+	}
+
+	@Override
+	public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
+		log.warn("Error from server connection: " + cause.getMessage());
+
+		// Close the session (forcefully)
+		session.close(true);
+	}
+
+	@Override
+	public void messageReceived(IoSession session, Object o) throws Exception {
+		Packet message = (Packet) o;
+
+		try {
+			Bot bot = (Bot) session.getAttribute("bot");
+			if (bot != null)
+				bot.handlePacket(message);
+		}
+		finally {
+			message.release();
+		}
+	}
+
+	@Override
+	public void messageSent(IoSession session, Object o) throws Exception { }
+
+	@Override
+	public void sessionClosed(IoSession session) throws Exception {
+		Bot bot = (Bot) session.getAttribute("bot");
+		if (bot != null && bot.loggedIn)
+			disconnects.incrementAndGet();
+	}
+
+	@Override
+	public void sessionCreated(IoSession session) throws Exception { }
+
+	@Override
+	public void sessionIdle(IoSession session, IdleStatus status) throws Exception { }
+
+	@Override
+	public void sessionOpened(IoSession session) throws Exception { }
+}
@@ -0,0 +1,96 @@
+package com.game.tools.mapconverter;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.game.common.model.Map;
+import com.game.common.model.MapFile;
+import com.game.common.model.Tile;
+
+// Converts a map from the old single gzip stream format into an indexed MapFile
+public class MapConverter {
+	private static final Logger log = LoggerFactory.getLogger(MapConverter.class);
+
+	protected static final Options options;
+
+	static {
+		options = new Options();
+
+		options.addOption("h", "help", false, "Print this help.");
+		options.addOption("i", "input-file", true, "The old format map file to convert.");
+		options.addOption("o", "output-file", true, "Path to the output file, default <input-file>.new.");
+		options.addOption("z", "compress", false, "Deflate each sector, the file is smaller but every sector read has to inflate it.");
+	}
+
+	public static void main(String[] args) {
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine config = parser.parse(options, args);
+
+			if (config.hasOption("h") || !config.hasOption("i")) {
+				HelpFormatter help = new HelpFormatter();
+				help.printHelp("java " + MapConverter.class.getSimpleName(), options);
+				return;
+			}
+
+			File inputFile = new File(config.getOptionValue("i"));
+			if (!inputFile.exists()) {
+				// fatal error
+				throw new RuntimeException("Invalid input file: " + inputFile.getName());
+			}
+
+			File outputFile = new File(config.getOptionValue("o", inputFile.getPath() + ".new"));
+			boolean compressed = config.hasOption("z");
+
+			MapConverter.convert(inputFile, outputFile, compressed);
+
+			MapFile result = MapFile.open(outputFile);
+			log.info("Converted " + result + " to: " + outputFile.getAbsolutePath() + " (" + inputFile.length() + " -> " + outputFile.length() + " bytes)");
+		}
+		catch (ParseException e) {
+			log.error("Error parsing command line options: " + e);
+		}
+		catch (IOException e) {
+			log.error("Error converting map: " + e);
+		}
+		catch (RuntimeException e) {
+			log.error(e.getMessage());
+		}
+	}
+
+	public static void convert(File inputFile, File outputFile, boolean compressed) throws IOException {
+		DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(inputFile)));
+
+		try {
+			// Confirm we are reading the correct map file
+			if (in.readInt() != Map.MAGIC_NUMBER)
+				throw new IOException("Attempted to read invalid map file");
+
+			int width = in.readInt();		// width in sectors
+			int height = in.readInt();		// height in sectors
+			int sectorSize = in.readInt();	// tiles (squared) per sector
+
+			// The old format already stores the sectors one after the other, each in the same layout
+			byte[][] sectors = new byte[width * height][sectorSize * sectorSize * Tile.DATA_LENGTH];
+			for (byte[] sector : sectors)
+				in.readFully(sector);
+
+			MapFile.write(outputFile, width, height, sectorSize, sectors, compressed);
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -1,20 +1,19 @@
 package com.game.tools.mapeditor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.game.common.model.Map;
+import com.game.common.model.MapFile;
 import com.game.common.model.Point;
+import com.game.common.model.Tile;
 
 public class EditableMap extends Map {
 	private static final Logger log = LoggerFactory.getLogger(EditableMap.class);
@@ -25,35 +24,30 @@ public class EditableMap extends Map {
 
 	public static EditableMap load(File mapFile) {
 		try {
-			DataInputStream in = new DataInputStream(new GZIPInputStream (new FileInputStream(mapFile)));
+			MapFile file = MapFile.open(mapFile);
 
-			// Confirm we are reading the correct map file
-			if (in.readInt() != Map.MAGIC_NUMBER) {
-				log.error("Attempted to read invalid map file.");
-				System.exit(1); // fatal error
-				return null;
-			}
-
-			int width = in.readInt();		// width in sectors
-			int height = in.readInt();		// height in sectors
-			int sectorSize = in.readInt();	// tiles (squared) per sector
+			int width = file.getWidth();			// width in sectors
+			int height = file.getHeight();			// height in sectors
+			int sectorSize = file.getSectorSize();	// tiles (squared) per sector
 
 			EditableTile[][] tiles = new EditableTile[width * sectorSize][height * sectorSize];
 
 			// for each sector
 			for (int y = 0;y < height;y++) {
 				for (int x = 0;x < width;x++) {
+					DataInputStream in = file.openSector(x, y);
+
 					// for each tile in this sector
 					for (int ty = 0;ty < sectorSize;ty++) {
 						for (int tx = 0;tx < sectorSize;tx++) {
 							tiles[tx + (x * sectorSize)][ty + (y * sectorSize)] = new EditableTile(in);
 						}
 					}
+
+					in.close();
 				}
 			}
 
-			in.close();
-
 			return new EditableMap(width, height, sectorSize, tiles);
 		}
 		catch (IOException ioe) {
@@ -118,26 +112,28 @@ public class EditableMap extends Map {
 	}
 
 	public synchronized void save(File file) throws FileNotFoundException, IOException {
-		DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
-
-		out.writeInt(Map.MAGIC_NUMBER);
-		out.writeInt(super.width);
-		out.writeInt(super.height);
-		out.writeInt(super.sectorSize);
+		byte[][] sectors = new byte[super.width * super.height][];
 
 		// for each sector
 		for (int y = 0;y < super.height;y++) {
 			for (int x = 0;x < super.width;x++) {
+				ByteArrayOutputStream data = new ByteArrayOutputStream(super.sectorSize * super.sectorSize * Tile.DATA_LENGTH);
+				DataOutputStream out = new DataOutputStream(data);
+
 				// for each tile in this sector
 				for (int ty = 0;ty < super.sectorSize;ty++) {
 					for (int tx = 0;tx < super.sectorSize;tx++) {
 						tiles[tx + (x * super.sectorSize)][ty + (y * super.sectorSize)].save(out);
 					}
 				}
+
+				out.close();
+				sectors[(y * super.width) + x] = data.toByteArray();
 			}
 		}
 
-		out.close();
+		// Saved uncompressed, so the game can map the file straight into memory
+		MapFile.write(file, super.width, super.height, super.sectorSize, sectors, false);
 	}
 
 	@Override